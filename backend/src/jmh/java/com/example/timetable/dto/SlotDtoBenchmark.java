@@ -0,0 +1,143 @@
+package com.example.timetable.dto;
+
+import com.example.timetable.model.SlotCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Créneaux des emplois du temps de tout un établissement : construction et tri chronologique, puis
+ * sérialisation JSON, avec une HashMap par créneau (ancien {@code slotEntry}, comparateur sur les
+ * chaînes "day" / "period" / "hourId") ou avec {@link SlotDto} (clé de tri entière précalculée).
+ *
+ * Allocations par opération : {@code mvn -Pjmh test-compile exec:exec -Djmh.args="SlotDtoBenchmark -prof gc"}
+ * (colonne gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlotDtoBenchmark {
+
+    // Établissement complet : 40 classes, 30 heures de cours par semaine sur les 48 créneaux de la grille
+    private static final int CLASSES = 40;
+    private static final int LESSONS_PER_CLASS = 30;
+
+    /** Cours d'une classe tels que lus dans l'export FET, dans l'ordre du fichier. */
+    private record Lesson(int day, boolean morning, int hour, String hourId, String subject, String teacher, String room) { }
+
+    private final SlotCodec codec = SlotCodec.DEFAULT;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<String> classes;
+    private List<List<Lesson>> lessons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        classes = new ArrayList<>();
+        lessons = new ArrayList<>();
+        for (int c = 0; c < CLASSES; c++) {
+            classes.add((c % 3 + 1) + "APIC-" + (c / 3 + 1));
+            List<Integer> ordinals = new ArrayList<>();
+            for (int ordinal = 0; ordinal < codec.count(); ordinal++) ordinals.add(ordinal);
+            Collections.shuffle(ordinals, random);
+            List<Lesson> week = new ArrayList<>();
+            for (int ordinal : ordinals.subList(0, LESSONS_PER_CLASS)) {
+                week.add(new Lesson(codec.day(ordinal), codec.morning(ordinal), codec.hour(ordinal), "H" + codec.hour(ordinal),
+                        "مادة " + random.nextInt(12), "أستاذ " + random.nextInt(60), "قاعة " + random.nextInt(30)));
+            }
+            lessons.add(week);
+        }
+    }
+
+    @Benchmark
+    public void hashMapSlots(Blackhole bh) {
+        for (int c = 0; c < CLASSES; c++) bh.consume(hashMapTimetable(c));
+    }
+
+    @Benchmark
+    public void slotDtoSlots(Blackhole bh) {
+        for (int c = 0; c < CLASSES; c++) bh.consume(slotDtoTimetable(c));
+    }
+
+    @Benchmark
+    public void hashMapJson(Blackhole bh) throws Exception {
+        for (int c = 0; c < CLASSES; c++) bh.consume(objectMapper.writeValueAsBytes(hashMapTimetable(c)));
+    }
+
+    @Benchmark
+    public void slotDtoJson(Blackhole bh) throws Exception {
+        for (int c = 0; c < CLASSES; c++) bh.consume(objectMapper.writeValueAsBytes(slotDtoTimetable(c)));
+    }
+
+    private List<Map<String, Object>> hashMapTimetable(int c) {
+        List<Map<String, Object>> res = new ArrayList<>();
+        for (Lesson l : lessons.get(c)) {
+            int ordinal = codec.encode(l.day(), l.morning(), l.hour());
+            Map<String, Object> m = new HashMap<>();
+            m.put("day", SlotCodec.DAYS.get(l.day()));
+            m.put("period", l.morning() ? "matin" : "soir");
+            m.put("hourId", l.hourId());
+            m.put("timeslot", codec.timeslot(ordinal));
+            m.put("subject", l.subject());
+            m.put("teacher", l.teacher());
+            m.put("subgroup", classes.get(c));
+            m.put("room", l.room());
+            res.add(m);
+        }
+        res.sort((a, b) -> {
+            int dayCompare = dayOrder((String) a.get("day")).compareTo(dayOrder((String) b.get("day")));
+            if (dayCompare != 0) return dayCompare;
+            if (!Objects.equals(a.get("period"), b.get("period"))) {
+                return Objects.equals(a.get("period"), "matin") ? -1 : 1;
+            }
+            return ((String) a.get("hourId")).compareTo((String) b.get("hourId"));
+        });
+        return res;
+    }
+
+    private List<SlotDto> slotDtoTimetable(int c) {
+        List<SlotDto> res = new ArrayList<>();
+        for (Lesson l : lessons.get(c)) {
+            int ordinal = codec.encode(l.day(), l.morning(), l.hour());
+            res.add(new SlotDto(SlotCodec.DAYS.get(l.day()), l.morning() ? "matin" : "soir",
+                    codec.hourId(ordinal, ordinal), codec.timeslot(ordinal),
+                    l.subject(), l.teacher(), classes.get(c), l.room(),
+                    ordinal, ordinal, codec.sortKey(ordinal, l.day(), l.morning())));
+        }
+        res.sort(SlotDto.CHRONOLOGICAL);
+        return res;
+    }
+
+    private static Integer dayOrder(String day) {
+        return switch (day) {
+            case "Lundi" -> 1;
+            case "Mardi" -> 2;
+            case "Mercredi" -> 3;
+            case "Jeudi" -> 4;
+            case "Vendredi" -> 5;
+            case "Samedi" -> 6;
+            default -> 7;
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.timetable.service;
+
+import com.example.timetable.dto.SlotDto;
+import com.example.timetable.model.SlotCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit du rendu d'un PDF professeur : en-tête officiel pré-rendu une seule fois et dessiné comme
+ * form XObject ("template"), ou mis en page à chaque document ("layout", comportement précédent).
+ *
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="PdfHeaderBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PdfHeaderBenchmark {
+
+    @Param({"template", "layout"})
+    public String header;
+
+    private PdfGeneratorService service;
+    private List<SlotDto> timetable;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+    @Setup
+    public void setUp() {
+        service = new PdfGeneratorService("template".equals(header));
+
+        // Semaine d'un professeur : 20 heures de cours réparties sur la grille
+        SlotCodec codec = SlotCodec.DEFAULT;
+        timetable = new ArrayList<>();
+        for (int ordinal = 0; ordinal < codec.count(); ordinal += 2) {
+            int day = codec.day(ordinal);
+            boolean morning = codec.morning(ordinal);
+            timetable.add(new SlotDto(SlotCodec.DAYS.get(day), morning ? "matin" : "soir",
+                    codec.hourId(ordinal, ordinal), codec.timeslot(ordinal),
+                    "الرياضيات", "أستاذ الرياضيات", (day % 3 + 1) + "APIC-" + (ordinal % 4 + 1), "قاعة " + (day + 1),
+                    ordinal, ordinal, codec.sortKey(ordinal, day, morning)));
+            if (timetable.size() == 20) break;
+        }
+    }
+
+    @Benchmark
+    public int teacherPdf() throws Exception {
+        out.reset();
+        service.writeTimetablePdf("أستاذ الرياضيات", timetable, "teacher", out);
+        return out.size();
+    }
+}
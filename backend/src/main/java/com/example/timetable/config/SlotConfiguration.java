@@ -0,0 +1,27 @@
+package com.example.timetable.config;
+
+import com.example.timetable.model.SlotCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.LocalTime;
+
+/**
+ * Grille horaire de l'établissement (nombre d'heures par demi-journée, heures de début, durée d'une heure),
+ * utilisée pour les plages horaires, les tris et les fusions de créneaux.
+ */
+@Configuration
+public class SlotConfiguration {
+
+    @Bean
+    public SlotCodec slotCodec(@Value("${timetable.slots.hours-per-half-day:4}") int hoursPerHalfDay,
+                               @Value("${timetable.slots.morning-start:08:30}") String morningStart,
+                               @Value("${timetable.slots.afternoon-start:14:30}") String afternoonStart,
+                               @Value("${timetable.slots.hour-length:60m}") Duration hourLength) {
+        SlotCodec codec = new SlotCodec(hoursPerHalfDay, LocalTime.parse(morningStart), LocalTime.parse(afternoonStart), hourLength);
+        System.out.println("🕒 Grille horaire: " + hoursPerHalfDay + " heures par demi-journée, " + codec.dayTimeslots());
+        return codec;
+    }
+}
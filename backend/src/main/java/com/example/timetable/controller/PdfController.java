@@ -1,17 +1,40 @@
 package com.example.timetable.controller;
 
+import com.example.timetable.dto.SlotDto;
+import com.example.timetable.model.SessionSnapshot;
+import com.example.timetable.service.PdfBatchRenderer;
+import com.example.timetable.service.PdfCache;
+import com.example.timetable.service.PdfJobService;
+import com.example.timetable.service.RequestCoalescer;
 import com.example.timetable.service.PdfGeneratorService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.timetable.xml.TimetableParser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @RestController
 @RequestMapping("/api/pdf")
@@ -31,43 +54,70 @@ public class PdfController {
     @Autowired
     private TimetableController timetableController;
 
+    // Pool borné pour les exports en lot
+    @Autowired
+    private PdfBatchRenderer pdfBatchRenderer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // PDF déjà rendus (clé : jeu de données, document, options, version des renommages)
+    @Autowired
+    private PdfCache pdfCache;
+
+    private static final String CACHE_HEADER = "X-PDF-Cache";
+
+    // Rendus identiques simultanés partagés (lien de classe envoyé à toute l'équipe...)
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    // Travaux PDF en tâche de fond (pool et file dédiés)
+    @Autowired
+    private PdfJobService pdfJobService;
+
+    // Threads des réponses asynchrones de Spring MVC : rendu d'une requête identique dont le rendu partagé a échoué
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+
     /**
      * Générer PDF pour un professeur
      */
     @GetMapping("/teacher/{name}")
-    public ResponseEntity<Resource> generateTeacherPdf(@PathVariable("name") String name, 
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> generateTeacherPdf(@PathVariable("name") String name, 
                                                         HttpSession session,
-                                                        @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+                                                        @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+                                                        HttpServletRequest request) {
         try {
-            // Récupérer les données d'emploi du temps
-            List<Map<String, Object>> timetableData = timetableController.timetableForTeacher(name, session, sessionId);
-            
-            if (timetableData == null || timetableData.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
+            // Utiliser un nom de fichier simple sans caractères arabes pour éviter les erreurs HTTP
+            String safeFilename = "emploi-temps-professeur-" + System.currentTimeMillis() + ".pdf";
 
-            // Générer le PDF
-            byte[] pdfBytes = pdfGeneratorService.generateTimetablePdf(name, timetableData, "teacher");
-            
-            if (pdfBytes == null) {
-                return ResponseEntity.internalServerError().build();
+            // PDF déjà rendu pour ces données et ces renommages ?
+            SessionSnapshot snapshot = timetableController.snapshot(session, sessionId);
+            PdfCache.Key key = PdfCache.Key.of(snapshot, "teacher", name, "");
+            byte[] cached = pdfCache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(pdfResponse(safeFilename, cached, "HIT"));
             }
 
-            ByteArrayResource resource = new ByteArrayResource(pdfBytes);
-            
-            // Utiliser un nom de fichier simple sans caractères arabes pour éviter les erreurs HTTP
-            String safeFilename = "emploi-temps-professeur-" + System.currentTimeMillis() + ".pdf";
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + safeFilename + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .contentLength(pdfBytes.length)
-                    .body(resource);
+            // Même PDF en cours de rendu pour une autre requête : partager son résultat
+            return coalescedPdf(request, requestCoalescer.join("pdf-teacher", key), safeFilename, "PDF professeur", flight -> {
+                // Récupérer les données d'emploi du temps
+                List<SlotDto> timetableData = timetableController.timetableForTeacher(name, snapshot);
+
+                if (timetableData == null || timetableData.isEmpty()) {
+                    flight.complete(new byte[0]);
+                    return ResponseEntity.notFound().build();
+                }
+
+                // Générer le PDF directement dans la réponse (envoi par morceaux) et le garder en cache
+                return streamedPdf(safeFilename, out -> writePdf(out, key, flight, "PDF professeur",
+                        o -> pdfGeneratorService.writeTimetablePdf(name, timetableData, "teacher", o)));
+            });
 
         } catch (Exception e) {
             System.err.println("⚠ Erreur génération PDF professeur: " + e.getMessage());
             e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().build());
         }
     }
 
@@ -75,39 +125,43 @@ public class PdfController {
      * Générer PDF pour une classe
      */
     @GetMapping("/subgroup/{name}")
-    public ResponseEntity<Resource> generateSubgroupPdf(
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> generateSubgroupPdf(
             @PathVariable("name") String name,
             @RequestParam(value = "labelMode", defaultValue = "diff") String labelMode,
             @RequestParam(value = "labelSubjects", required = false) String labelSubjects,
             HttpSession session,
-            @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+            @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+            HttpServletRequest request) {
         try {
-            // Récupérer les données d'emploi du temps
-            List<Map<String, Object>> timetableData = timetableController.timetableForSubgroup(name, labelMode, labelSubjects, session, sessionId);
-            
-            if (timetableData == null || timetableData.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
+            String filename = "emploi-temps-classe-" + System.currentTimeMillis() + ".pdf";
 
-            // Générer le PDF
-            byte[] pdfBytes = pdfGeneratorService.generateTimetablePdf(name, timetableData, "subgroup");
-            
-            if (pdfBytes == null) {
-                return ResponseEntity.internalServerError().build();
+            // PDF déjà rendu pour ces données, ces options de libellés et ces renommages ?
+            SessionSnapshot snapshot = timetableController.snapshot(session, sessionId);
+            PdfCache.Key key = PdfCache.Key.of(snapshot, "subgroup", name, subgroupOptions(labelMode, labelSubjects));
+            byte[] cached = pdfCache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(pdfResponse(filename, cached, "HIT"));
             }
 
-            ByteArrayResource resource = new ByteArrayResource(pdfBytes);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"emploi-temps-classe-" + System.currentTimeMillis() + ".pdf\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .contentLength(pdfBytes.length)
-                    .body(resource);
+            // Même PDF en cours de rendu pour une autre requête (lien partagé) : partager son résultat
+            return coalescedPdf(request, requestCoalescer.join("pdf-subgroup", key), filename, "PDF classe", flight -> {
+                // Récupérer les données d'emploi du temps
+                List<SlotDto> timetableData = timetableController.timetableForSubgroup(name, labelMode, labelSubjects, snapshot);
+
+                if (timetableData == null || timetableData.isEmpty()) {
+                    flight.complete(new byte[0]);
+                    return ResponseEntity.notFound().build();
+                }
+
+                // Générer le PDF directement dans la réponse et le garder en cache
+                return streamedPdf(filename, out -> writePdf(out, key, flight, "PDF classe",
+                        o -> pdfGeneratorService.writeTimetablePdf(name, timetableData, "subgroup", o)));
+            });
 
         } catch (Exception e) {
             System.err.println("⚠ Erreur génération PDF classe: " + e.getMessage());
             e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().build());
         }
     }
 
@@ -115,57 +169,191 @@ public class PdfController {
      * Générer PDF des salles vacantes
      */
     @GetMapping("/vacant-rooms")
-    public ResponseEntity<Resource> generateVacantRoomsPdf(HttpSession session,
-                                                            @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> generateVacantRoomsPdf(HttpSession session,
+                                                            @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+                                                            @RequestParam(value = "day", required = false) String day,
+                                                            @RequestParam(value = "period", required = false) String period,
+                                                            @RequestParam(value = "hourFrom", required = false) String hourFrom,
+                                                            @RequestParam(value = "hourTo", required = false) String hourTo,
+                                                            HttpServletRequest request) {
         try {
-            // Récupérer les données des salles vacantes
-            List<Map<String, Object>> vacantData = timetableController.listVacantRooms(session, sessionId);
-            
-            if (vacantData == null || vacantData.isEmpty()) {
-                return ResponseEntity.notFound().build();
+            // PDF déjà rendu pour ces données, ces filtres et ces renommages ?
+            SessionSnapshot snapshot = timetableController.snapshot(session, sessionId);
+            PdfCache.Key key = vacantRoomsKey(snapshot, day, period, hourFrom, hourTo);
+            byte[] cached = pdfCache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(pdfResponse("salles-vacantes.pdf", cached, "HIT"));
             }
 
-            // Générer le PDF
-            byte[] pdfBytes = pdfGeneratorService.generateVacantRoomsPdf(vacantData);
-            
-            if (pdfBytes == null) {
-                return ResponseEntity.internalServerError().build();
-            }
+            // Même PDF en cours de rendu pour une autre requête : partager son résultat
+            return coalescedPdf(request, requestCoalescer.join("pdf-vacant-rooms", key), "salles-vacantes.pdf", "PDF salles vacantes", flight -> {
+                // Récupérer les données des salles vacantes (filtres optionnels jour / période / heures)
+                List<SlotDto> vacantData = timetableController.listVacantRooms(snapshot, day, period, hourFrom, hourTo);
 
-            ByteArrayResource resource = new ByteArrayResource(pdfBytes);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"salles-vacantes.pdf\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .contentLength(pdfBytes.length)
-                    .body(resource);
+                if (vacantData == null || vacantData.isEmpty()) {
+                    flight.complete(new byte[0]);
+                    return ResponseEntity.notFound().build();
+                }
+
+                // Générer le PDF directement dans la réponse : les pages partent dès qu'elles sont terminées
+                return streamedPdf("salles-vacantes.pdf", out -> writePdf(out, key, flight, "PDF salles vacantes",
+                        o -> pdfGeneratorService.writeVacantRoomsPdf(vacantData, o)));
+            });
 
         } catch (Exception e) {
             System.err.println("⚠ Erreur génération PDF salles vacantes: " + e.getMessage());
             e.printStackTrace();
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().build());
+        }
+    }
+
+    /** Rendu d'un PDF (réponse envoyée au fil du rendu ou 404) pour une participation à un rendu regroupé. */
+    @FunctionalInterface
+    private interface PdfRendering {
+        ResponseEntity<StreamingResponseBody> render(RequestCoalescer.Flight<byte[]> flight) throws Exception;
+    }
+
+    /** Écriture d'un PDF dans la réponse. */
+    @FunctionalInterface
+    private interface PdfWriting {
+        void write(OutputStream out) throws Exception;
+    }
+
+    /**
+     * Génère le PDF dans la réponse et, une fois terminé, le met en cache et le transmet aux requêtes
+     * identiques en attente. La copie gardée pour le cache est bornée à la taille maximale d'une entrée :
+     * un PDF plus gros n'est pas mis en cache et les requêtes en attente rendent elles-mêmes.
+     * Les en-têtes sont déjà envoyés : en cas d'erreur la réponse est interrompue
+     * (le client reçoit un fichier incomplet), rien n'est mis en cache, les requêtes en attente rendent
+     * elles-mêmes et l'erreur est journalisée.
+     */
+    private void writePdf(OutputStream out, PdfCache.Key key, RequestCoalescer.Flight<byte[]> flight,
+                          String what, PdfWriting writing) throws IOException {
+        long limit = pdfCache.maxEntryBytes();
+        ByteArrayOutputStream[] copy = {new ByteArrayOutputStream()};
+        OutputStream tee = new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                if (copy[0] != null) {
+                    if (copy[0].size() + 1L > limit) copy[0] = null;
+                    else copy[0].write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                if (copy[0] != null) {
+                    // Trop gros pour le cache : on arrête de copier
+                    if (copy[0].size() + (long) len > limit) copy[0] = null;
+                    else copy[0].write(b, off, len);
+                }
+            }
+        };
+        byte[] pdf = null;
+        try {
+            writing.write(tee);
+            if (copy[0] != null) {
+                pdf = copy[0].toByteArray();
+                pdfCache.put(key, pdf);
+            }
+            tee.flush();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("⚠ Erreur génération " + what + ": " + e.getMessage());
+            e.printStackTrace();
+            throw new IOException("Erreur génération " + what, e);
+        } finally {
+            flight.complete(pdf);
+        }
+    }
+
+    /**
+     * Réponse regroupée : le responsable du rendu rend tout de suite ; une requête identique reçoit, sans
+     * bloquer de thread, le PDF du responsable quand il est terminé (404 si ce rendu n'a trouvé aucune
+     * donnée) ou rend elle-même si ce rendu a échoué ou dépassé le délai. Le rendu du responsable est
+     * libéré à la fin de la réponse même si le PDF n'a jamais été écrit (délai asynchrone, client parti...).
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> coalescedPdf(HttpServletRequest request,
+            RequestCoalescer.Flight<byte[]> flight, String filename, String what, PdfRendering rendering) {
+        if (flight.leader()) {
+            WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(flight, new CallableProcessingInterceptor() {
+                @Override
+                public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                    // Sans effet si le PDF a déjà été publié
+                    flight.complete(null);
+                }
+            });
+            return CompletableFuture.completedFuture(renderPdf(flight, what, rendering));
+        }
+        return flight.result().thenApplyAsync(pdf -> {
+            if (pdf == null) return renderPdf(flight, what, rendering);
+            if (pdf.length == 0) return ResponseEntity.<StreamingResponseBody>notFound().build();
+            return pdfResponse(filename, pdf, "COALESCED");
+        }, applicationTaskExecutor);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> renderPdf(RequestCoalescer.Flight<byte[]> flight, String what,
+                                                                   PdfRendering rendering) {
+        try {
+            return rendering.render(flight);
+        } catch (Exception e) {
+            flight.complete(null);
+            System.err.println("⚠ Erreur génération " + what + ": " + e.getMessage());
+            e.printStackTrace();
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /** Réponse PDF envoyée au fil du rendu (taille inconnue), pas encore en cache. */
+    private static ResponseEntity<StreamingResponseBody> streamedPdf(String filename, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header(CACHE_HEADER, "MISS")
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(body);
+    }
+
     /**
-     * Générer PDF pour tous les professeurs (en lot)
+     * Réponse avec un PDF déjà rendu (taille connue) : cache (HIT) ou requête identique (COALESCED)
+     */
+    private static ResponseEntity<StreamingResponseBody> pdfResponse(String filename, byte[] pdf, String origin) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header(CACHE_HEADER, origin)
+                .contentType(MediaType.APPLICATION_PDF)
+                .contentLength(pdf.length)
+                .body(out -> out.write(pdf));
+    }
+
+    /** Options d'affichage d'une classe qui changent le PDF (partie de la clé de cache). */
+    private static String subgroupOptions(String labelMode, String labelSubjects) {
+        return labelMode + "\u0001" + Objects.toString(labelSubjects, "");
+    }
+
+    /**
+     * Générer PDF pour tous les professeurs (en lot) : archive ZIP envoyée au fil du rendu
+     * (un PDF par professeur, rendus en parallèle), terminée par un rapport rapport.json
      */
     @GetMapping("/all-teachers")
-    public ResponseEntity<Resource> generateAllTeachersPdf(HttpSession session,
-                                                            @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+    public ResponseEntity<StreamingResponseBody> generateAllTeachersPdf(HttpSession session,
+                                                                         @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
         try {
-            // Récupérer la liste des professeurs
-            Map<String, List<String>> teachersBySubject = timetableController.listTeachers(session, sessionId);
-            List<String> allTeachers = new ArrayList<>();
-            teachersBySubject.values().forEach(allTeachers::addAll);
+            // Une seule version des données pour tout l'export
+            SessionSnapshot snapshot = timetableController.snapshot(session, sessionId);
+            List<String> allTeachers = timetableController.teacherDisplayNames(snapshot);
             
             if (allTeachers.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
 
-            // TODO: Implémenter génération PDF multiple
-            // Pour l'instant, retourner une erreur
-            return ResponseEntity.status(501).build(); // Not Implemented
+            StreamingResponseBody body = out -> writeTeachersZip(allTeachers, snapshot, out, () -> { });
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"emplois-temps-professeurs-" + System.currentTimeMillis() + ".zip\"")
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .body(body);
 
         } catch (Exception e) {
             System.err.println("⚠ Erreur génération PDF tous professeurs: " + e.getMessage());
@@ -175,22 +363,85 @@ public class PdfController {
     }
 
     /**
-     * Générer PDF pour toutes les classes (en lot)
+     * Écrit chaque PDF dans l'archive dès qu'il est rendu (aucune archive complète en mémoire)
+     */
+    private void writeTeachersZip(List<String> teachers, SessionSnapshot snapshot, OutputStream out,
+                                  Runnable progress) throws IOException {
+        long start = System.nanoTime();
+        List<String> failed = new ArrayList<>();
+        List<String> empty = new ArrayList<>();
+        int[] rendered = {0};
+        Set<String> entries = new HashSet<>();
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        pdfBatchRenderer.renderAsCompleted(teachers, name -> renderTeacher(name, snapshot), (name, pdf) -> {
+            progress.run();
+            if (pdf == null) {
+                failed.add(name);
+            } else if (pdf.length == 0) {
+                empty.add(name);
+            } else {
+                zip.putNextEntry(new ZipEntry(entryName(name, entries)));
+                zip.write(pdf);
+                zip.closeEntry();
+                zip.flush();
+                rendered[0]++;
+            }
+        });
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("teachers", teachers.size());
+        report.put("rendered", rendered[0]);
+        report.put("failed", failed.size());
+        report.put("empty", empty.size());
+        report.put("elapsedMs", elapsedMs);
+        report.put("failedTeachers", failed);
+        report.put("emptyTeachers", empty);
+        zip.putNextEntry(new ZipEntry("rapport.json"));
+        zip.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(report));
+        zip.closeEntry();
+        zip.finish();
+
+        System.out.println("📦 Export PDF professeurs: " + rendered[0] + "/" + teachers.size() + " rendus, "
+                + failed.size() + " échecs, " + empty.size() + " vides (" + elapsedMs + " ms)");
+    }
+
+    /**
+     * Nom de fichier dans l'archive : nom du professeur sans caractères interdits, unique
+     */
+    private static String entryName(String name, Set<String> used) {
+        String base = name.replaceAll("[\\\\/:*?\"<>|]", "_").trim();
+        if (base.isEmpty()) base = "professeur";
+        String entry = base + ".pdf";
+        for (int i = 2; !used.add(entry); i++) entry = base + "-" + i + ".pdf";
+        return entry;
+    }
+
+    /**
+     * Générer PDF pour toutes les classes (en lot) : un seul document, une page par classe
+     * dans l'ordre de la liste des classes, envoyé au fil de l'assemblage
      */
     @GetMapping("/all-subgroups")
-    public ResponseEntity<Resource> generateAllSubgroupsPdf(HttpSession session,
-                                                             @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+    public ResponseEntity<StreamingResponseBody> generateAllSubgroupsPdf(
+            @RequestParam(value = "labelMode", defaultValue = "diff") String labelMode,
+            @RequestParam(value = "labelSubjects", required = false) String labelSubjects,
+            HttpSession session,
+            @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
         try {
-            // Récupérer la liste des classes
-            List<String> allSubgroups = timetableController.listSubgroups(session, sessionId);
+            // Une seule version des données pour tout l'export
+            SessionSnapshot snapshot = timetableController.snapshot(session, sessionId);
+            List<String> allSubgroups = timetableController.classNames(snapshot.data());
             
             if (allSubgroups.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
 
-            // TODO: Implémenter génération PDF multiple
-            // Pour l'instant, retourner une erreur
-            return ResponseEntity.status(501).build(); // Not Implemented
+            StreamingResponseBody body = out -> writeSubgroupsBooklet(allSubgroups, labelMode, labelSubjects, snapshot, out, () -> { });
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"emplois-temps-classes-" + System.currentTimeMillis() + ".pdf\"")
+                    .contentType(MediaType.APPLICATION_PDF)
+                    .body(body);
 
         } catch (Exception e) {
             System.err.println("⚠ Erreur génération PDF toutes classes: " + e.getMessage());
@@ -198,4 +449,225 @@ public class PdfController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Livret des classes : les emplois du temps sont calculés en parallèle et mis en page dans l'ordre
+     * dans un seul document (une seule police embarquée pour toutes les pages, pas un sous-ensemble par
+     * classe). Les pages terminées sont écrites dans la réponse au fur et à mesure, seule la fenêtre de
+     * calcul reste en mémoire.
+     */
+    private void writeSubgroupsBooklet(List<String> classes, String labelMode, String labelSubjects,
+                                       SessionSnapshot snapshot, OutputStream out, Runnable progress) throws IOException {
+        long start = System.nanoTime();
+        List<String> failed = new ArrayList<>();
+
+        PdfGeneratorService.Booklet booklet;
+        try {
+            booklet = pdfGeneratorService.openBooklet(out);
+        } catch (Exception e) {
+            throw new IOException("Erreur génération PDF classes", e);
+        }
+        pdfBatchRenderer.computeInOrder(classes,
+                name -> timetableController.timetableForSubgroup(name, labelMode, labelSubjects, snapshot), (name, timetable) -> {
+            progress.run();
+            if (timetable == null) {
+                failed.add(name);
+                return;
+            }
+            if (timetable.isEmpty()) return;
+            try {
+                booklet.add(name, timetable, "subgroup");
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Erreur génération PDF classe " + name, e);
+            }
+        });
+        int pages = booklet.pages();
+        booklet.close();
+
+        System.out.println("📚 Export PDF classes: " + pages + " pages, " + (classes.size() - failed.size()) + "/"
+                + classes.size() + " classes, " + failed.size() + " échecs (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        if (!failed.isEmpty()) System.err.println("⚠ Classes non rendues: " + failed);
+    }
+
+    /**
+     * PDF d'un professeur (cache, sinon rendu puis mis en cache) ; vide si le professeur n'a aucun créneau,
+     * null si le rendu a échoué
+     */
+    private byte[] renderTeacher(String name, SessionSnapshot snapshot) {
+        PdfCache.Key key = PdfCache.Key.of(snapshot, "teacher", name, "");
+        byte[] cached = pdfCache.get(key);
+        if (cached != null) return cached;
+        return requestCoalescer.execute("pdf-teacher", key, () -> {
+            List<SlotDto> timetableData = timetableController.timetableForTeacher(name, snapshot);
+            if (timetableData.isEmpty()) return new byte[0];
+            byte[] pdf = pdfGeneratorService.generateTimetablePdf(name, timetableData, "teacher");
+            if (pdf != null) pdfCache.put(key, pdf);
+            return pdf;
+        });
+    }
+
+    /**
+     * PDF d'une classe (cache, sinon rendu puis mis en cache) ; vide si la classe n'a aucun créneau
+     */
+    private byte[] renderSubgroup(String name, String labelMode, String labelSubjects, SessionSnapshot snapshot) {
+        PdfCache.Key key = PdfCache.Key.of(snapshot, "subgroup", name, subgroupOptions(labelMode, labelSubjects));
+        byte[] cached = pdfCache.get(key);
+        if (cached != null) return cached;
+        return requestCoalescer.execute("pdf-subgroup", key, () -> {
+            List<SlotDto> timetableData = timetableController.timetableForSubgroup(name, labelMode, labelSubjects, snapshot);
+            if (timetableData.isEmpty()) return new byte[0];
+            byte[] pdf = pdfGeneratorService.generateTimetablePdf(name, timetableData, "subgroup");
+            if (pdf != null) pdfCache.put(key, pdf);
+            return pdf;
+        });
+    }
+
+    /**
+     * PDF des salles vacantes (cache, sinon rendu puis mis en cache) ; vide si aucune salle vacante
+     */
+    private byte[] renderVacantRooms(SessionSnapshot snapshot, String day, String period, String hourFrom, String hourTo) {
+        PdfCache.Key key = vacantRoomsKey(snapshot, day, period, hourFrom, hourTo);
+        byte[] cached = pdfCache.get(key);
+        if (cached != null) return cached;
+        return requestCoalescer.execute("pdf-vacant-rooms", key, () -> {
+            List<SlotDto> vacantData = timetableController.listVacantRooms(snapshot, day, period, hourFrom, hourTo);
+            if (vacantData.isEmpty()) return new byte[0];
+            byte[] pdf = pdfGeneratorService.generateVacantRoomsPdf(vacantData);
+            if (pdf != null) pdfCache.put(key, pdf);
+            return pdf;
+        });
+    }
+
+    private static PdfCache.Key vacantRoomsKey(SessionSnapshot snapshot, String day, String period, String hourFrom, String hourTo) {
+        return PdfCache.Key.of(snapshot, "vacant-rooms", "", String.join("\u0001",
+                Objects.toString(day, ""), Objects.toString(period, ""), Objects.toString(hourFrom, ""), Objects.toString(hourTo, "")));
+    }
+
+    // ==================== Travaux PDF asynchrones ====================
+
+    /**
+     * Déposer un travail PDF : {"type": "teacher" | "subgroup" | "vacant-rooms" | "all-teachers" | "all-subgroups",
+     * "name", et les options de l'export synchrone correspondant (labelMode, labelSubjects, day, period, hourFrom, hourTo)}.
+     * Réponse 202 avec l'identifiant du travail, 429 si la file est pleine.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestBody Map<String, String> request,
+                                                         HttpSession session,
+                                                         @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        String type = request.getOrDefault("type", "");
+        String name = request.get("name");
+        String labelMode = request.getOrDefault("labelMode", "diff");
+        String labelSubjects = request.get("labelSubjects");
+        // Une seule version des données pour tout le travail
+        SessionSnapshot snapshot = timetableController.snapshot(session, sessionId);
+        String owner = timetableController.sessionId(session, sessionId);
+
+        PdfJobService.Job job;
+        try {
+            switch (type) {
+                case "teacher" -> {
+                    if (name == null || timetableController.timetableForTeacher(name, snapshot).isEmpty()) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    job = pdfJobService.submit(owner, type, name, "emploi-temps-professeur-" + System.currentTimeMillis() + ".pdf",
+                            MediaType.APPLICATION_PDF_VALUE, 1, (out, progress) -> writeJobPdf(out, progress, renderTeacher(name, snapshot)));
+                }
+                case "subgroup" -> {
+                    if (name == null || timetableController.timetableForSubgroup(name, labelMode, labelSubjects, snapshot).isEmpty()) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    job = pdfJobService.submit(owner, type, name, "emploi-temps-classe-" + System.currentTimeMillis() + ".pdf",
+                            MediaType.APPLICATION_PDF_VALUE, 1,
+                            (out, progress) -> writeJobPdf(out, progress, renderSubgroup(name, labelMode, labelSubjects, snapshot)));
+                }
+                case "vacant-rooms" -> {
+                    String day = request.get("day"), period = request.get("period");
+                    String hourFrom = request.get("hourFrom"), hourTo = request.get("hourTo");
+                    if (timetableController.listVacantRooms(snapshot, day, period, hourFrom, hourTo).isEmpty()) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    job = pdfJobService.submit(owner, type, null, "salles-vacantes.pdf", MediaType.APPLICATION_PDF_VALUE, 1,
+                            (out, progress) -> writeJobPdf(out, progress, renderVacantRooms(snapshot, day, period, hourFrom, hourTo)));
+                }
+                case "all-teachers" -> {
+                    List<String> teachers = timetableController.teacherDisplayNames(snapshot);
+                    if (teachers.isEmpty()) return ResponseEntity.notFound().build();
+                    job = pdfJobService.submit(owner, type, null, "emplois-temps-professeurs-" + System.currentTimeMillis() + ".zip",
+                            "application/zip", teachers.size(), (out, progress) -> writeTeachersZip(teachers, snapshot, out, progress));
+                }
+                case "all-subgroups" -> {
+                    List<String> classes = timetableController.classNames(snapshot.data());
+                    if (classes.isEmpty()) return ResponseEntity.notFound().build();
+                    job = pdfJobService.submit(owner, type, null, "emplois-temps-classes-" + System.currentTimeMillis() + ".pdf",
+                            MediaType.APPLICATION_PDF_VALUE, classes.size(),
+                            (out, progress) -> writeSubgroupsBooklet(classes, labelMode, labelSubjects, snapshot, out, progress));
+                }
+                default -> {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Type de travail inconnu: " + type));
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            // File pleine : le client réessaie plus tard
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", "Trop de travaux PDF en attente, réessayez dans quelques secondes"));
+        }
+
+        System.out.println("🗂 Travail PDF déposé: " + job.id() + " (" + type + ")");
+        return ResponseEntity.accepted().body(jobStatus(job));
+    }
+
+    private static void writeJobPdf(OutputStream out, Runnable progress, byte[] pdf) throws IOException {
+        if (pdf == null || pdf.length == 0) throw new IOException("Erreur génération PDF");
+        out.write(pdf);
+        progress.run();
+    }
+
+    /**
+     * État d'un travail : QUEUED, RUNNING, DONE, FAILED ou CANCELLED, avec la progression (done / total).
+     * 404 si le travail n'a pas été déposé par la session courante.
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable("id") String id, HttpSession session,
+                                                      @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        PdfJobService.Job job = pdfJobService.get(id, timetableController.sessionId(session, sessionId));
+        if (job == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(jobStatus(job));
+    }
+
+    /**
+     * Télécharger le document d'un travail terminé (409 tant qu'il n'est pas prêt)
+     */
+    @GetMapping("/jobs/{id}/download")
+    public ResponseEntity<?> downloadJob(@PathVariable("id") String id, HttpSession session,
+                                         @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        PdfJobService.Job job = pdfJobService.get(id, timetableController.sessionId(session, sessionId));
+        if (job == null) return ResponseEntity.notFound().build();
+        Path file = pdfJobService.resultFile(job);
+        if (file == null) return ResponseEntity.status(HttpStatus.CONFLICT).body(jobStatus(job));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.filename() + "\"")
+                .contentType(MediaType.parseMediaType(job.contentType()))
+                .body(new FileSystemResource(file));
+    }
+
+    /**
+     * Annuler un travail (ou supprimer son résultat)
+     */
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<Void> cancelJob(@PathVariable("id") String id, HttpSession session,
+                                          @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        return pdfJobService.cancel(id, timetableController.sessionId(session, sessionId))
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private static Map<String, Object> jobStatus(PdfJobService.Job job) {
+        Map<String, Object> status = job.describe();
+        status.put("statusUrl", "/api/pdf/jobs/" + job.id());
+        status.put("downloadUrl", "/api/pdf/jobs/" + job.id() + "/download");
+        return status;
+    }
 }
@@ -1,37 +1,51 @@
 package com.example.timetable.controller;
 
+import com.example.timetable.dto.SlotDto;
+import com.example.timetable.model.ClassNames;
+import com.example.timetable.model.DatasetKey;
+import com.example.timetable.model.RoomOccupancy;
+import com.example.timetable.model.RoomSchedule;
+import com.example.timetable.model.SessionSnapshot;
+import com.example.timetable.model.SlotCodec;
+import com.example.timetable.model.TimetableData;
+import com.example.timetable.service.DatasetStore;
+import com.example.timetable.service.JsonBatchExporter;
+import com.example.timetable.service.MaterializedViews;
+import com.example.timetable.service.PdfCache;
+import com.example.timetable.service.PdfJobService;
+import com.example.timetable.service.RequestCoalescer;
+import com.example.timetable.service.SessionStore;
+import com.example.timetable.service.UserData;
 import com.example.timetable.xml.TimetableParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-
-/**
- * Classe pour stocker les données d'un utilisateur (session)
- */
-class UserData {
-    Map<String, Map<String, Map<String, Map<String,String>>>> teachers = new HashMap<>();
-    Map<String, Map<String, Map<String, Map<String,String>>>> subgroups = new HashMap<>();
-    List<TimetableParser.ActivitySlot> activities = new ArrayList<>();
-    Map<String, String> teacherMappings = new HashMap<>();
-    Map<String, String> roomMappings = new HashMap<>();
-    
-    public boolean hasData() {
-        return !teachers.isEmpty() || !subgroups.isEmpty() || !activities.isEmpty();
-    }
-}
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
@@ -56,21 +70,195 @@ public class TimetableController {
     private static final String ACTIVITIES_FILE = "activities.xml";
     private static final String MAPPINGS_FILE = "mappings.json";
 
-    // Stockage des données par session (multi-utilisateurs)
-    private Map<String, UserData> userSessions = new ConcurrentHashMap<>();
+    // Stockage des données par session (multi-utilisateurs), borné en mémoire
+    @Autowired
+    private SessionStore sessionStore;
+
+    // Jeux de données partagés entre sessions (stockage par empreinte du contenu)
+    @Autowired
+    private DatasetStore datasetStore;
+
+    // Cache des PDF rendus (statistiques exposées dans /debug/sessions)
+    @Autowired
+    private PdfCache pdfCache;
+
+    // Travaux PDF asynchrones (statistiques exposées dans /debug/sessions)
+    @Autowired
+    private PdfJobService pdfJobService;
+
+    // Calculs identiques simultanés regroupés (statistiques exposées dans /debug/sessions)
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    // Emplois du temps pré-calculés en JSON compressé, par version des données
+    @Autowired
+    private MaterializedViews materializedViews;
+
+    // Grille horaire : ordinaux, plages horaires et clés de tri des créneaux
+    @Autowired
+    private SlotCodec slotCodec;
+
+    // Exports NDJSON : emplois du temps calculés en parallèle sur un petit pool dédié (pas celui des PDF)
+    @Autowired
+    private JsonBatchExporter jsonBatchExporter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Mode de parsing des XML (STAX par défaut, DOM conservé pour comparaison)
+    @Value("${timetable.parser.mode:STAX}")
+    private TimetableParser.Mode parserMode = TimetableParser.Mode.STAX;
 
     /**
      * Récupère les données de l'utilisateur courant (basé sur sa session)
      * Supporte aussi un header X-Session-ID pour contourner les problèmes de cookies cross-domain
      */
     private UserData getUserData(HttpSession session, @RequestHeader(value = "X-Session-ID", required = false) String headerSessionId) {
-        // Priorité au header X-Session-ID si présent
-        String sessionId = (headerSessionId != null && !headerSessionId.isEmpty()) 
-            ? headerSessionId 
+        return sessionStore.get(sessionId(session, headerSessionId));
+    }
+
+    /**
+     * Identifiant de la session courante : header X-Session-ID si présent, sinon session HTTP
+     */
+    public String sessionId(HttpSession session, String headerSessionId) {
+        return (headerSessionId != null && !headerSessionId.isEmpty())
+            ? headerSessionId
             : session.getId();
-        return userSessions.computeIfAbsent(sessionId, k -> new UserData());
     }
     
+    /**
+     * Publie le jeu de données d'un upload. Le modèle est obtenu avant la publication (le parsing ne se fait
+     * jamais dans {@link UserData#update}, qui peut être rejoué) ; si la version a changé entre-temps
+     * (renommage...), on recommence à partir de la nouvelle version.
+     */
+    private SessionSnapshot publishUpload(UserData userData, DatasetStore.Upload upload) {
+        while (true) {
+            SessionSnapshot current = userData.snapshot();
+            DatasetKey key = current.datasetKey().merge(upload.teachers(), upload.subgroups(), upload.activities());
+            SessionSnapshot next = current.withDataset(key, datasetStore.dataset(key, upload));
+            if (userData.publish(current, next)) return next;
+        }
+    }
+
+    /**
+     * Version courante des données de l'utilisateur (pour les exports PDF)
+     */
+    public SessionSnapshot snapshot(HttpSession session, String sessionId) {
+        return getUserData(session, sessionId).snapshot();
+    }
+
+    // Les réponses changent avec le code déployé : les ETag d'un démarrage précédent ne sont pas reconnus
+    private static final String ETAG_EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * GET conditionnel : ETag fort dérivé de la version des données ({@link SessionSnapshot#version()})
+     * et de la requête (chemin et paramètres). true si le client a déjà cette version : la réponse 304
+     * est envoyée sans rien calculer (l'endpoint retourne null). Sinon l'ETag est ajouté à la réponse.
+     * Une vue pré-calculée envoyée en gzip a son propre ETag (suffixe {@value #GZIP_ETAG_SUFFIX}) :
+     * un ETag fort identifie un seul encodage du corps.
+     */
+    private boolean notModified(ServletWebRequest request, SessionSnapshot snapshot) {
+        String etag = etag(request, snapshot);
+        // Toujours revalider : la version change à chaque upload ou renommage
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            // Vues pré-calculées envoyées en gzip aux clients qui l'acceptent
+            request.getResponse().setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        // Le client a la version gzip : elle est encore valide si la version des données n'a pas changé
+        if (acceptsGzip(request) && ifNoneMatch(request, etag + GZIP_ETAG_SUFFIX)) {
+            return request.checkNotModified(etag + GZIP_ETAG_SUFFIX);
+        }
+        return request.checkNotModified(etag);
+    }
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private static String etag(ServletWebRequest request, SessionSnapshot snapshot) {
+        HttpServletRequest http = request.getRequest();
+        return digest(ETAG_EPOCH, snapshot.version(), http.getRequestURI(), Objects.toString(http.getQueryString(), ""));
+    }
+
+    private static boolean ifNoneMatch(ServletWebRequest request, String etag) {
+        Enumeration<String> values = request.getRequest().getHeaders(HttpHeaders.IF_NONE_MATCH);
+        while (values != null && values.hasMoreElements()) {
+            if (values.nextElement().contains("\"" + etag + "\"")) return true;
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(ServletWebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static final String DEFAULT_LABEL_MODE = "diff";
+
+    /**
+     * Lance le pré-calcul de tous les emplois du temps de cette version (professeurs, classes avec les
+     * libellés par défaut, salles), sous les noms affichés utilisés par le frontend.
+     */
+    private void materializeViews(SessionSnapshot snapshot) {
+        if (!snapshot.hasData() || !materializedViews.isMissing(snapshot.version())) return;
+        TimetableData data = snapshot.data();
+        Map<String, Supplier<Object>> views = new LinkedHashMap<>();
+        for (String teacher : teacherDisplayNames(snapshot)) {
+            views.put(viewName("teacher", teacher), () -> timetableForTeacher(teacher, snapshot));
+        }
+        for (String className : classNames(data)) {
+            views.put(viewName("subgroup", className), () -> timetableForSubgroup(className, DEFAULT_LABEL_MODE, null, snapshot));
+        }
+        for (String room : roomDisplayNames(snapshot)) {
+            views.put(viewName("room", room), () -> timetableForRoom(room, snapshot));
+        }
+        materializedViews.materialize(snapshot.version(), views);
+    }
+
+    private static String viewName(String type, String name) {
+        return type + "\u0001" + name;
+    }
+
+    /**
+     * Réponse pré-calculée (gzip, avec l'ETag de la version gzip, si le client l'accepte), ou null :
+     * calcul en direct. Une version sans vues (session rechargée après redémarrage) lance leur calcul
+     * pour les requêtes suivantes.
+     */
+    private ResponseEntity<?> materializedView(ServletWebRequest request, SessionSnapshot snapshot, String type, String name) {
+        byte[] gzip = materializedViews.get(snapshot.version(), viewName(type, name));
+        if (gzip == null) {
+            materializeViews(snapshot);
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (!acceptsGzip(request)) {
+            return response.body(MaterializedViews.gunzip(gzip));
+        }
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.ETAG, "\"" + etag(request, snapshot) + GZIP_ETAG_SUFFIX + "\"");
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").contentLength(gzip.length).body(gzip);
+    }
+
+    private static String digest(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.join("\u0001", parts).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Noms affichés (renommages appliqués) de tous les professeurs, triés et sans doublon
+     */
+    public List<String> teacherDisplayNames(SessionSnapshot snapshot) {
+        TimetableData data = snapshot.data();
+        Set<String> names = new TreeSet<>();
+        for (int t = 0; t < data.teacherCount(); t++) names.add(applyTeacherMapping(data.teacherName(t), snapshot));
+        return new ArrayList<>(names);
+    }
+
     // Surcharge pour compatibilité avec code existant
     private UserData getUserData(HttpSession session) {
         return getUserData(session, null);
@@ -78,7 +266,8 @@ public class TimetableController {
 
     /**
      * Chargement automatique des fichiers XML au démarrage du backend
-     * Désormais désactivé car chaque utilisateur a ses propres données
+     * Désormais désactivé car chaque utilisateur a ses propres données :
+     * les sessions sauvegardées sont réhydratées à la demande par le SessionStore
      */
     @PostConstruct
     public void loadDataOnStartup() {
@@ -87,12 +276,15 @@ public class TimetableController {
         System.out.println("═══════════════════════════════════════════════════════════");
         System.out.println("  ✓ Chaque utilisateur aura son propre emploi du temps");
         System.out.println("  ✓ Les données sont isolées par session HTTP");
+        System.out.println("  ✓ Sessions sauvegardées rechargées à la demande (data/sessions)");
         System.out.println("  ✓ Prêt à recevoir des connexions...");
         System.out.println("═══════════════════════════════════════════════════════════");
     }
     
     /**
-     * Sauvegarde les mappings de renommage pour un utilisateur dans son dossier de session
+     * Sauvegarde les mappings de renommage pour un utilisateur dans son dossier de session.
+     * Écrit toujours la dernière version publiée ; les écritures d'une même session sont sérialisées
+     * pour qu'un renommage plus ancien n'écrase pas un plus récent.
      */
     private void saveMappings(String sessionId, UserData userData) throws IOException {
         Path sessionPath = Paths.get(DATA_DIR, SESSIONS_DIR, sessionId);
@@ -100,27 +292,30 @@ public class TimetableController {
             Files.createDirectories(sessionPath);
         }
         
-        // Construire le JSON manuellement
-        StringBuilder json = new StringBuilder("{");
-        json.append("\"teachers\":{");
-        boolean first = true;
-        for (Map.Entry<String, String> entry : userData.teacherMappings.entrySet()) {
-            if (!first) json.append(",");
-            json.append("\"").append(escapeJson(entry.getKey())).append("\":");
-            json.append("\"").append(escapeJson(entry.getValue())).append("\"");
-            first = false;
-        }
-        json.append("},\"rooms\":{");
-        first = true;
-        for (Map.Entry<String, String> entry : userData.roomMappings.entrySet()) {
-            if (!first) json.append(",");
-            json.append("\"").append(escapeJson(entry.getKey())).append("\":");
-            json.append("\"").append(escapeJson(entry.getValue())).append("\"");
-            first = false;
+        synchronized (userData) {
+            SessionSnapshot snapshot = userData.snapshot();
+            // Construire le JSON manuellement
+            StringBuilder json = new StringBuilder("{");
+            json.append("\"teachers\":{");
+            boolean first = true;
+            for (Map.Entry<String, String> entry : snapshot.teacherMappings().entrySet()) {
+                if (!first) json.append(",");
+                json.append("\"").append(escapeJson(entry.getKey())).append("\":");
+                json.append("\"").append(escapeJson(entry.getValue())).append("\"");
+                first = false;
+            }
+            json.append("},\"rooms\":{");
+            first = true;
+            for (Map.Entry<String, String> entry : snapshot.roomMappings().entrySet()) {
+                if (!first) json.append(",");
+                json.append("\"").append(escapeJson(entry.getKey())).append("\":");
+                json.append("\"").append(escapeJson(entry.getValue())).append("\"");
+                first = false;
+            }
+            json.append("}}");
+            
+            Files.writeString(sessionPath.resolve(MAPPINGS_FILE), json.toString());
         }
-        json.append("}}");
-        
-        Files.writeString(sessionPath.resolve(MAPPINGS_FILE), json.toString());
         System.out.println("✓ Mappings sauvegardés pour session: " + sessionId);
     }
     
@@ -132,24 +327,24 @@ public class TimetableController {
     /**
      * Applique les renommages aux noms de professeurs
      */
-    private String applyTeacherMapping(String original, UserData userData) {
+    private String applyTeacherMapping(String original, SessionSnapshot snapshot) {
         if (original == null || original.isEmpty()) return original;
-        return userData.teacherMappings.getOrDefault(original, original);
+        return snapshot.teacherMappings().getOrDefault(original, original);
     }
     
     /**
      * Trouve le nom original d'un professeur à partir de son nom renommé
      */
-    private String findOriginalTeacherName(String renamedOrOriginal, UserData userData) {
+    private String findOriginalTeacherName(String renamedOrOriginal, SessionSnapshot snapshot) {
         if (renamedOrOriginal == null || renamedOrOriginal.isEmpty()) return renamedOrOriginal;
         
         // Vérifier si c'est déjà un nom original
-        if (userData.teachers.containsKey(renamedOrOriginal)) {
+        if (snapshot.data().teacherId(renamedOrOriginal) != TimetableData.NONE) {
             return renamedOrOriginal;
         }
         
         // Chercher dans les mappings (nom renommé -> nom original)
-        for (Map.Entry<String, String> entry : userData.teacherMappings.entrySet()) {
+        for (Map.Entry<String, String> entry : snapshot.teacherMappings().entrySet()) {
             if (entry.getValue().equals(renamedOrOriginal)) {
                 return entry.getKey(); // Retourner le nom original
             }
@@ -162,19 +357,19 @@ public class TimetableController {
     /**
      * Applique les renommages aux noms de salles
      */
-    private String applyRoomMapping(String original, UserData userData) {
+    private String applyRoomMapping(String original, SessionSnapshot snapshot) {
         if (original == null || original.isEmpty()) return original;
-        return userData.roomMappings.getOrDefault(original, original);
+        return snapshot.roomMappings().getOrDefault(original, original);
     }
     
     /**
      * Trouve le nom original d'une salle à partir de son nom renommé
      */
-    private String findOriginalRoomName(String renamedOrOriginal, UserData userData) {
+    private String findOriginalRoomName(String renamedOrOriginal, SessionSnapshot snapshot) {
         if (renamedOrOriginal == null || renamedOrOriginal.isEmpty()) return renamedOrOriginal;
         
         // Chercher dans les mappings (nom renommé -> nom original)
-        for (Map.Entry<String, String> entry : userData.roomMappings.entrySet()) {
+        for (Map.Entry<String, String> entry : snapshot.roomMappings().entrySet()) {
             if (entry.getValue().equals(renamedOrOriginal)) {
                 return entry.getKey(); // Retourner le nom original
             }
@@ -193,114 +388,137 @@ public class TimetableController {
         Map<String, Object> result = new LinkedHashMap<>();
         List<Map<String, Object>> sessions = new ArrayList<>();
         
-        for (Map.Entry<String, UserData> entry : userSessions.entrySet()) {
+        for (Map.Entry<String, UserData> entry : sessionStore.sessions().entrySet()) {
             Map<String, Object> sessionInfo = new LinkedHashMap<>();
             String sessionId = entry.getKey();
-            UserData data = entry.getValue();
+            SessionSnapshot snapshot = entry.getValue().snapshot();
             
             sessionInfo.put("sessionId", sessionId);
-            sessionInfo.put("teachersCount", data.teachers.size());
-            sessionInfo.put("subgroupsCount", data.subgroups.size());
-            sessionInfo.put("activitiesCount", data.activities.size());
-            sessionInfo.put("hasData", data.hasData());
+            sessionInfo.put("teachersCount", snapshot.data().teacherCount());
+            sessionInfo.put("subgroupsCount", snapshot.data().subgroupCount());
+            sessionInfo.put("activitiesCount", snapshot.data().activityCount());
+            sessionInfo.put("joinedActivities", snapshot.data().activityIndex().count());
+            sessionInfo.put("datasetId", snapshot.datasetKey().isEmpty() ? null : snapshot.datasetKey().id());
+            sessionInfo.put("estimatedBytes", snapshot.data().estimatedBytes());
+            sessionInfo.put("hasData", snapshot.hasData());
             
             sessions.add(sessionInfo);
         }
         
         result.put("activeSessions", sessions.size());
+        result.put("store", sessionStore.stats());
+        result.put("pdfCache", pdfCache.stats());
+        result.put("pdfJobs", pdfJobService.stats());
+        result.put("coalescing", requestCoalescer.stats());
+        result.put("views", materializedViews.stats());
         result.put("sessions", sessions);
         
         return ResponseEntity.ok(result);
     }
 
+    // Comparaison DOM / STAX sur les fichiers d'une session : désactivée par défaut
+    @Value("${timetable.debug.parser-compare:false}")
+    private boolean parserCompareEnabled = false;
+
+    /**
+     * Endpoint debug : re-parse les fichiers XML sauvegardés de la session avec les deux
+     * parseurs (DOM et STAX) et compare les structures produites ainsi que les temps de parsing.
+     * 404 si timetable.debug.parser-compare n'est pas activé, 400 si l'identifiant de session est invalide.
+     */
+    @GetMapping("/debug/parser/compare")
+    public ResponseEntity<?> debugCompareParsers(HttpSession session,
+                                                 @RequestHeader(value = "X-Session-ID", required = false) String headerSessionId) {
+        if (!parserCompareEnabled) return ResponseEntity.notFound().build();
+        String sessionId = sessionId(session, headerSessionId);
+        if (!SessionStore.isValidSessionId(sessionId)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Identifiant de session invalide"));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sessionId", sessionId);
+        // Dossier résolu par le SessionStore : uniquement data/sessions/<id>
+        Path sessionPath = SessionStore.persistedDir(sessionId);
+        if (sessionPath == null) return ResponseEntity.ok(result);
+        try {
+            for (String file : List.of(TEACHERS_FILE, SUBGROUPS_FILE, ACTIVITIES_FILE)) {
+                Path xml = sessionPath.resolve(file);
+                if (!Files.exists(xml)) continue;
+                Map<String, Object> fileResult = new LinkedHashMap<>();
+                Object[] parsed = new Object[2];
+                TimetableParser.Mode[] modes = TimetableParser.Mode.values();
+                for (int i = 0; i < modes.length; i++) {
+                    long start = System.nanoTime();
+                    try (var in = Files.newInputStream(xml)) {
+                        parsed[i] = switch (file) {
+                            case TEACHERS_FILE -> TimetableParser.parseTeachers(in, modes[i]);
+                            case SUBGROUPS_FILE -> TimetableParser.parseSubgroups(in, modes[i]);
+                            default -> TimetableParser.parseActivities(in, modes[i]);
+                        };
+                    }
+                    fileResult.put(modes[i].name().toLowerCase() + "Ms", (System.nanoTime() - start) / 1_000_000.0);
+                }
+                fileResult.put("identical", Objects.equals(parsed[0], parsed[1]));
+                result.put(file, fileResult);
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
     @PostMapping("/upload")
     public ResponseEntity<?> upload(@RequestParam(required=false) MultipartFile teachersXml,
                                     @RequestParam(required=false) MultipartFile subgroupsXml,
                                     @RequestParam(required=false) MultipartFile activitiesXml,
                                     HttpSession session) throws Exception {
         
-        // Récupérer les données de l'utilisateur
-        UserData userData = getUserData(session);
         String sessionId = session.getId();
         
-        System.out.println("📤 Upload pour session: " + sessionId);
+        System.out.println("📤 Upload pour session: " + sessionId + " (parseur " + parserMode + ")");
         
-        // Parser les fichiers XML
-        if(teachersXml != null) {
-            userData.teachers = TimetableParser.parseTeachers(teachersXml.getInputStream());
-            System.out.println("  ✓ Professeurs parsés: " + userData.teachers.size());
-        }
-        if(subgroupsXml != null) {
-            userData.subgroups = TimetableParser.parseSubgroups(subgroupsXml.getInputStream());
-            System.out.println("  ✓ Sous-groupes parsés: " + userData.subgroups.size());
-        }
-        if(activitiesXml != null) {
-            userData.activities = TimetableParser.parseActivities(activitiesXml.getInputStream());
-            System.out.println("  ✓ Activités parsées: " + userData.activities.size());
-        }
+        // Lire chaque fichier une seule fois, les trois en parallèle : parsing, empreinte SHA-256
+        // et écriture dans le stockage par empreinte (une seule copie par contenu) dans le même passage
+        DatasetStore.Upload upload = datasetStore.ingest(
+                teachersXml != null ? teachersXml.getInputStream() : null,
+                subgroupsXml != null ? subgroupsXml.getInputStream() : null,
+                activitiesXml != null ? activitiesXml.getInputStream() : null);
+
+        // Publier la nouvelle version en une seule fois : les parties non envoyées sont reprises de la version
+        // courante, et le modèle est partagé avec les sessions qui ont envoyé les mêmes fichiers (parsé une seule fois).
+        // Publication et sauvegarde dans le dossier de session sans que la session puisse être retirée entre les deux
+        SessionSnapshot snapshot = sessionStore.modify(sessionId, userData -> {
+            SessionSnapshot published = publishUpload(userData, upload);
+            saveUploadedFilesForSession(sessionId, published.datasetKey(),
+                    teachersXml != null, subgroupsXml != null, activitiesXml != null);
+            return published;
+        });
+        // Pré-calcul des emplois du temps en tâche de fond (les GET servent ensuite des octets prêts)
+        materializeViews(snapshot);
+        TimetableData data = snapshot.data();
+        if(teachersXml != null) System.out.println("  ✓ Professeurs parsés: " + data.teacherCount());
+        if(subgroupsXml != null) System.out.println("  ✓ Sous-groupes parsés: " + data.subgroupCount());
+        if(activitiesXml != null) System.out.println("  ✓ Activités parsées: " + data.activityCount());
         
-        // Sauvegarder les fichiers dans le dossier de session
-        saveUploadedFilesForSession(sessionId, teachersXml, subgroupsXml, activitiesXml);
+        // La session est rechargeable depuis le disque : le stockage peut faire de la place
+        sessionStore.enforceLimits();
         
         // Build response with detected lists so frontend can display immediately
-        List<String> teacherList = new ArrayList<>(userData.teachers.keySet());
+        List<String> teacherList = new ArrayList<>();
+        for (int t = 0; t < data.teacherCount(); t++) teacherList.add(data.teacherName(t));
         
         // Build teachers by subject (for dropdown)
-        Map<String, Set<String>> subjectTeachers = new TreeMap<>();
-        for (var teacher : userData.teachers.entrySet()) {
-            String teacherName = teacher.getKey();
-            String renamedTeacherName = applyTeacherMapping(teacherName, userData);
-            for (var day : teacher.getValue().values()) {
-                for (var hour : day.values()) {
-                    Map<String, String> slot = hour;
-                    if (slot != null && slot.containsKey("subject")) {
-                        String subject = slot.getOrDefault("subject", "").trim();
-                        if (!subject.isEmpty()) {
-                            subjectTeachers.computeIfAbsent(subject, k -> new TreeSet<>()).add(renamedTeacherName);
-                        }
-                    }
-                }
-            }
-        }
-        Map<String, List<String>> teachersBySubject = new TreeMap<>();
-        for (Map.Entry<String, Set<String>> entry : subjectTeachers.entrySet()) {
-            teachersBySubject.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-        }
+        Map<String, List<String>> teachersBySubject = teachersBySubject(data, snapshot);
         
-        // Collect all rooms
-        Set<String> allRoomsOriginal = new TreeSet<>();
-        for (var sgSchedule : userData.subgroups.values()) {
-            for (var dayEntry : sgSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRoomsOriginal.add(room);
-                }
-            }
-        }
-        for (var tSchedule : userData.teachers.values()) {
-            for (var dayEntry : tSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRoomsOriginal.add(room);
-                }
-            }
-        }
-        List<String> roomsList = allRoomsOriginal.stream()
-            .map(r -> applyRoomMapping(r, userData))
+        // Salles des emplois du temps (index calculé à la construction du modèle)
+        List<String> roomsList = data.scheduleRooms().stream()
+            .map(r -> applyRoomMapping(r, snapshot))
             .sorted()
             .toList();
         
         // classes (without subgroup suffix), sanitize to hide placeholder terms
-        Set<String> classes = new HashSet<>();
-        for (String sgKey : userData.subgroups.keySet()) {
-            String base = extractClassBase(sgKey);
-            String clean = sanitizeClassName(base);
-            if (!clean.isBlank()) classes.add(clean);
-        }
-        // Sorted list
-        List<String> classList = classes.stream().sorted().toList();
+        List<String> classList = classNames(data);
         // full subgroup identifiers
-        List<String> subgroupList = new ArrayList<>(userData.subgroups.keySet());
+        List<String> subgroupList = new ArrayList<>();
+        for (int g = 0; g < data.subgroupCount(); g++) subgroupList.add(data.subgroupName(g));
 
         Map<String,Object> resp = new HashMap<>();
         resp.put("status","ok");
@@ -318,187 +536,159 @@ public class TimetableController {
     
     /**
      * Sauvegarde les fichiers XML uploadés dans le dossier de la session utilisateur
+     * (liens vers le stockage par empreinte) ainsi que la clé du jeu de données
      */
-    private void saveUploadedFilesForSession(String sessionId, MultipartFile teachersXml, 
-                                            MultipartFile subgroupsXml, MultipartFile activitiesXml) throws IOException {
+    private void saveUploadedFilesForSession(String sessionId, DatasetKey key,
+                                            boolean teachers, boolean subgroups, boolean activities) throws IOException {
         Path sessionPath = Paths.get(DATA_DIR, SESSIONS_DIR, sessionId);
         if (!Files.exists(sessionPath)) {
             Files.createDirectories(sessionPath);
         }
 
-        if (teachersXml != null && !teachersXml.isEmpty()) {
-            Path targetPath = sessionPath.resolve(TEACHERS_FILE);
-            Files.copy(teachersXml.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        if (teachers) {
+            datasetStore.link(key.teachers(), sessionPath.resolve(TEACHERS_FILE));
         }
-        if (subgroupsXml != null && !subgroupsXml.isEmpty()) {
-            Path targetPath = sessionPath.resolve(SUBGROUPS_FILE);
-            Files.copy(subgroupsXml.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        if (subgroups) {
+            datasetStore.link(key.subgroups(), sessionPath.resolve(SUBGROUPS_FILE));
         }
-        if (activitiesXml != null && !activitiesXml.isEmpty()) {
-            Path targetPath = sessionPath.resolve(ACTIVITIES_FILE);
-            Files.copy(activitiesXml.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        if (activities) {
+            datasetStore.link(key.activities(), sessionPath.resolve(ACTIVITIES_FILE));
         }
+        sessionStore.saveDatasetKey(sessionId, key);
     }
 
     @GetMapping("/teachers")
-    public Map<String, List<String>> listTeachers(HttpSession session,
+    public Map<String, List<String>> listTeachers(HttpSession session, ServletWebRequest request,
                                                    @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
-        UserData userData = getUserData(session, sessionId);
+        SessionSnapshot snapshot = getUserData(session, sessionId).snapshot();
+        if (notModified(request, snapshot)) return null;
         
-        // Créer un Map matière -> liste de professeurs (avec noms renommés)
-        Map<String, Set<String>> subjectTeachers = new TreeMap<>();
-        
-        // Parcourir tous les professeurs et leurs emplois du temps
-        for (var teacher : userData.teachers.entrySet()) {
-            String teacherName = teacher.getKey();
-            String renamedTeacherName = applyTeacherMapping(teacherName, userData); // Appliquer le renommage
-            
-            // Parcourir l'emploi du temps pour trouver les matières enseignées
-            for (var day : teacher.getValue().values()) {
-                for (var hour : day.values()) {
-                    Map<String, String> slot = hour;
-                    if (slot != null && slot.containsKey("subject")) {
-                        String subject = slot.getOrDefault("subject", "").trim();
-                        if (!subject.isEmpty()) {
-                            // Ajouter le professeur renommé à la liste de cette matière
-                            subjectTeachers.computeIfAbsent(subject, k -> new TreeSet<>()).add(renamedTeacherName);
-                        }
-                    }
-                }
-            }
-        }
-        
-        // Convertir les Set en List pour la réponse
+        return teachersBySubject(snapshot.data(), snapshot);
+    }
+
+    /**
+     * Map matière -> liste triée de professeurs (avec noms renommés)
+     */
+    private Map<String, List<String>> teachersBySubject(TimetableData data, SessionSnapshot snapshot) {
+        // Index matière -> professeurs calculé à la construction du modèle : seul le renommage reste à appliquer
         Map<String, List<String>> result = new TreeMap<>();
-        for (Map.Entry<String, Set<String>> entry : subjectTeachers.entrySet()) {
-            result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        for (Map.Entry<String, int[]> entry : data.subjectTeachers().entrySet()) {
+            Set<String> teachers = new TreeSet<>();
+            for (int t : entry.getValue()) {
+                teachers.add(applyTeacherMapping(data.teacherName(t), snapshot)); // Appliquer le renommage
+            }
+            result.put(entry.getKey(), new ArrayList<>(teachers));
         }
         
         return result;
     }
     
     @GetMapping("/subgroups")
-    public List<String> listSubgroups(HttpSession session,
+    public List<String> listSubgroups(HttpSession session, ServletWebRequest request,
                                       @RequestHeader(value = "X-Session-ID", required = false) String sessionId){
-        UserData userData = getUserData(session, sessionId);
-        Set<String> classes = new HashSet<>();
-        for (String sgKey : userData.subgroups.keySet()) {
-            String base = extractClassBase(sgKey);
-            String clean = sanitizeClassName(base);
-            if (!clean.isBlank()) classes.add(clean);
-        }
-        return classes.stream().sorted().toList();
+        SessionSnapshot snapshot = getUserData(session, sessionId).snapshot();
+        if (notModified(request, snapshot)) return null;
+        return classNames(snapshot.data());
+    }
+
+    /**
+     * Noms de classes (sans suffixe de sous-groupe, marqueurs automatiques retirés), triés
+     */
+    public List<String> classNames(TimetableData data) {
+        return data.classIndex().classNames();
     }
 
     @GetMapping("/classes/{name}/subgroups")
     public List<String> getSubgroupsForClass(@PathVariable("name") String name, 
-                                              HttpSession session,
+                                              HttpSession session, ServletWebRequest request,
                                               @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
-        UserData userData = getUserData(session, sessionId);
+        SessionSnapshot snapshot = getUserData(session, sessionId).snapshot();
+        if (notModified(request, snapshot)) return null;
         // Return full subgroup identifiers (e.g. "3APIC-5:G1") that belong to the sanitized class name
-        String target = sanitizeClassName(name);
-        return userData.subgroups.keySet().stream()
-                .filter(sg -> {
-                    String base = extractClassBase(sg);
-                    return sanitizeClassName(base).equals(target) && !isAutoSubgroup(sg);
-                })
-                .sorted()
-                .toList();
+        TimetableData data = snapshot.data();
+        String target = ClassNames.sanitizeClassName(name);
+        List<String> result = new ArrayList<>();
+        for (int g : data.classIndex().regularSubgroups(target)) result.add(data.subgroupName(g));
+        return result;
     }
 
     @GetMapping(value = "/timetable/teacher/{name}", produces = "application/json")
-    public List<Map<String,Object>> timetableForTeacher(@PathVariable("name") String name, 
-                                                         HttpSession session,
-                                                         @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
-        UserData userData = getUserData(session, sessionId);
+    public ResponseEntity<?> timetableForTeacher(@PathVariable("name") String name, 
+                                                 HttpSession session, ServletWebRequest request,
+                                                 @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        SessionSnapshot snapshot = snapshot(session, sessionId);
+        if (notModified(request, snapshot)) return null;
+        ResponseEntity<?> view = materializedView(request, snapshot, "teacher", name);
+        if (view != null) return view;
+        // Requêtes identiques simultanées : un seul calcul
+        return ResponseEntity.ok(requestCoalescer.execute(RequestCoalescer.Key.of(snapshot, "timetable-teacher", name, ""),
+                () -> timetableForTeacher(name, snapshot)));
+    }
+
+    /**
+     * Emploi du temps d'un professeur dans une version donnée des données (exports en lot :
+     * tous les documents sont produits à partir de la même version)
+     */
+    public List<SlotDto> timetableForTeacher(String name, SessionSnapshot snapshot) {
         // Convertir le nom renommé en nom original si nécessaire
-        String originalName = findOriginalTeacherName(name, userData);
+        String originalName = findOriginalTeacherName(name, snapshot);
         
-        List<Map<String,Object>> res = new ArrayList<>();
-        var schedule = userData.teachers.getOrDefault(originalName, Collections.emptyMap());
+        TimetableData data = snapshot.data();
+        List<SlotDto> res = new ArrayList<>();
+        int teacher = data.teacherId(originalName);
 
         // Build raw list and try to attach subgroup label when possible
-        for(var dayEntry: schedule.entrySet()){
-            String dayRaw = dayEntry.getKey();
-            String day = TimetableParser.normalizeDayName(dayRaw);
-            boolean morning = dayRaw.toLowerCase().endsWith("_m");
-            for(var hourEntry: dayEntry.getValue().entrySet()){
-                String hour = hourEntry.getKey();
-                Map<String,String> d = hourEntry.getValue();
-                String timeslot = TimetableParser.mapHourToTimeslot(morning, hour);
-                String subject = d.getOrDefault("subject", "");
-                String students = d.getOrDefault("students", "");
-                String room = d.getOrDefault("room", "");
-
-                // Vérifier si c'est un cours avec sous-groupes coïncidents
-        boolean hasCoincidentGroups = hasCoincidentGroupsForTeacherSlot(students, dayEntry.getKey(), hour, name, subject, userData);
-
-        // N'ajouter le label du groupe que si ce n'est pas un cours avec sous-groupes coïncidents
-        // et seulement si le sous-groupe n'est pas déjà explicite dans le champ students (ex: "2APIC-2:G1").
-        String studentsWithLabel = students;
-        if (!hasCoincidentGroups) {
-            String groupLabel = findSubgroupLabelForTeacherSlot(students, dayEntry.getKey(), hour, name, subject, userData);
-            // Détecter si students contient déjà un suffixe explicite ":Gx"
-            String existingLabel = null;
-            int colonIdx = students != null ? students.indexOf(':') : -1;
-            if (colonIdx >= 0 && colonIdx + 1 < (students != null ? students.length() : 0)) {
-                existingLabel = students.substring(colonIdx + 1).trim();
-            }
+        for(int slot = 0; teacher != TimetableData.NONE && slot < data.slotCount(); slot++){
+            if (!data.hasTeacherSlot(teacher, slot)) continue;
+            String subject = data.teacherSubject(teacher, slot);
+            String students = data.teacherStudents(teacher, slot);
+            String room = data.teacherRoom(teacher, slot);
+
+            // Vérifier si c'est un cours avec sous-groupes coïncidents
+            int activity = data.teacherActivity(teacher, slot);
+            boolean hasCoincidentGroups = hasCoincidentGroupsForTeacherSlot(students, activity, slot, name, subject, data);
+
+            // N'ajouter le label du groupe que si ce n'est pas un cours avec sous-groupes coïncidents
+            // et seulement si le sous-groupe n'est pas déjà explicite dans le champ students (ex: "2APIC-2:G1").
+            String studentsWithLabel = students;
+            if (!hasCoincidentGroups) {
+                String groupLabel = findSubgroupLabelForTeacherSlot(students, activity, slot, name, subject, data);
+                // Détecter si students contient déjà un suffixe explicite ":Gx"
+                String existingLabel = null;
+                int colonIdx = students != null ? students.indexOf(':') : -1;
+                if (colonIdx >= 0 && colonIdx + 1 < (students != null ? students.length() : 0)) {
+                    existingLabel = students.substring(colonIdx + 1).trim();
+                }
 
-            if (groupLabel != null && !groupLabel.isBlank()) {
-                // Si le label est déjà présent après ":", ne rien ajouter pour éviter "G1 (G1)"
-                if (existingLabel != null && !existingLabel.isBlank()) {
-                    // si différent, on évite aussi d'ajouter pour ne pas doubler
-                    studentsWithLabel = students;
-                } else {
-                    studentsWithLabel = students + " (" + groupLabel + ")";
+                if (groupLabel != null && !groupLabel.isBlank()) {
+                    // Si le label est déjà présent après ":", ne rien ajouter pour éviter "G1 (G1)"
+                    if (existingLabel != null && !existingLabel.isBlank()) {
+                        // si différent, on évite aussi d'ajouter pour ne pas doubler
+                        studentsWithLabel = students;
+                    } else {
+                        studentsWithLabel = students + " (" + groupLabel + ")";
+                    }
                 }
             }
-        }
 
-                res.add(slotEntry(day, morning ? "matin" : "soir", hour, timeslot,
-                        subject, originalName, studentsWithLabel, room, userData));
-            }
+            res.add(slotEntry(data, slot, subject, originalName, studentsWithLabel, room, snapshot));
         }
 
         // Sort by day and time
-        res.sort((a, b) -> {
-            int dayCompare = getDayOrder((String)a.get("day")).compareTo(getDayOrder((String)b.get("day")));
-            if (dayCompare != 0) return dayCompare;
-
-            if (!Objects.equals(a.get("period"), b.get("period"))) {
-                return Objects.equals(a.get("period"), "matin") ? -1 : 1;
-            }
-
-            return ((String)a.get("hourId")).compareTo((String)b.get("hourId"));
-        });
+        res.sort(SlotDto.CHRONOLOGICAL);
 
         // Merge consecutive slots with same subject, same teacher and same students (labels included)
-        List<Map<String,Object>> merged = new ArrayList<>();
+        List<SlotDto> merged = new ArrayList<>();
         for (int i = 0; i < res.size(); i++) {
-            Map<String,Object> cur = res.get(i);
+            SlotDto cur = res.get(i);
             if (merged.isEmpty()) {
                 merged.add(cur);
                 continue;
             }
-            Map<String,Object> last = merged.get(merged.size() - 1);
+            SlotDto last = merged.get(merged.size() - 1);
             if (canMergeTeacherSlots(last, cur)) {
-                // create merged slot from last and cur
-                String newHourId = mergeHourIds((String)last.get("hourId"), (String)cur.get("hourId"));
-                String newTimeslot = mapHourRange((String)last.get("hourId"), (String)cur.get("hourId"), Objects.equals(last.get("period"), "matin"));
-                Map<String,Object> newSlot = slotEntry(
-                        (String)last.get("day"),
-                        (String)last.get("period"),
-                        newHourId,
-                        newTimeslot,
-                        (String)last.get("subject"),
-                        (String)last.get("teacher"),
-                        (String)last.get("subgroup"),
-                        (String)last.get("room"),
-                        userData
-                );
-                // replace last
-                merged.set(merged.size() - 1, newSlot);
+                // replace last with the merged slot (last + cur)
+                merged.set(merged.size() - 1, mergedEntry(last, cur, snapshot));
             } else {
                 merged.add(cur);
             }
@@ -507,29 +697,28 @@ public class TimetableController {
         return merged;
     }
 
-    private boolean hasCoincidentGroupsForTeacherSlot(String studentsBase, String dayRaw, String hour, String teacherName, String subject, UserData userData) {
+    private boolean hasCoincidentGroupsForTeacherSlot(String studentsBase, int activity, int slot, String teacherName, String subject, TimetableData data) {
         if (studentsBase == null || studentsBase.isBlank()) return false;
 
-        // Chercher tous les sous-groupes candidats (G1, G2, etc.)
-        List<String> candidates = new ArrayList<>();
-        for (String sg : userData.subgroups.keySet()) {
-            if (sg.equals(studentsBase) || sg.startsWith(studentsBase + ":")) {
-                candidates.add(sg);
+        // Jointure exacte sur l'identifiant d'activité : les sous-groupes de la classe qui suivent ce cours
+        if (activity != TimetableData.NONE) {
+            int attending = 0;
+            for (int g : data.activityIndex().subgroups(activity)) {
+                if (ClassNames.belongsTo(data.subgroupName(g), studentsBase)) attending++;
             }
+            return attending > 1;
         }
+
+        // Fichiers sans identifiant d'activité : chercher tous les sous-groupes candidats (G1, G2, etc.)
+        List<Integer> candidates = data.classIndex().candidates(studentsBase);
         if (candidates.size() <= 1) return false;
 
         // Compter combien de sous-groupes ont cours avec ce prof à ce créneau
         int groupsWithClass = 0;
-        for (String sg : candidates) {
-            var schedule = userData.subgroups.get(sg);
-            if (schedule == null) continue;
-            var dayMap = schedule.get(dayRaw);
-            if (dayMap == null) continue;
-            var det = dayMap.get(hour);
-            if (det == null) continue;
-            String sgTeacher = det.getOrDefault("teacher", "");
-            String sgSubject = det.getOrDefault("subject", "");
+        for (int g : candidates) {
+            if (!data.hasSubgroupSlot(g, slot)) continue;
+            String sgTeacher = data.subgroupTeacher(g, slot);
+            String sgSubject = data.subgroupSubject(g, slot);
             
             // Vérifier si c'est le même cours
             if (!sgTeacher.isBlank() && sgTeacher.equals(teacherName)) {
@@ -547,93 +736,43 @@ public class TimetableController {
         return groupsWithClass > 1;
     }
 
-    private String findSubgroupLabelForTeacherSlot(String studentsBase, String dayRaw, String hour, String teacherName, String subject, UserData userData) {
+    private String findSubgroupLabelForTeacherSlot(String studentsBase, int activity, int slot, String teacherName, String subject, TimetableData data) {
         if (studentsBase == null || studentsBase.isBlank()) return null;
-        // Look for subgroup keys that equal studentsBase or start with studentsBase+":"
-        List<String> candidates = new ArrayList<>();
-        for (String sg : userData.subgroups.keySet()) {
-            if (sg.equals(studentsBase) || sg.startsWith(studentsBase + ":")) candidates.add(sg);
+
+        // Jointure exacte : le sous-groupe de la classe qui suit cette activité
+        if (activity != TimetableData.NONE) {
+            for (int g : data.activityIndex().subgroups(activity)) {
+                String sg = data.subgroupName(g);
+                if (ClassNames.belongsTo(sg, studentsBase)) return ClassNames.extractGroupPart(sg);
+            }
+            return null;
         }
+
+        // Fichiers sans identifiant d'activité : rapprochement par professeur ou par matière
+        // Look for subgroup keys that equal studentsBase or start with studentsBase+":"
+        List<Integer> candidates = data.classIndex().candidates(studentsBase);
         if (candidates.isEmpty()) return null;
 
         // Check each candidate subgroup at this day/hour: if the subgroup's teacher (in subgroup XML) matches teacherName
         // OR the subject matches, we infer this subgroup is the intended one.
-        for (String sg : candidates) {
-            var schedule = userData.subgroups.get(sg);
-            if (schedule == null) continue;
-            var dayMap = schedule.get(dayRaw);
-            if (dayMap == null) continue;
-            var hourMap = dayMap.get(hour);
-            if (hourMap == null) continue;
-            String sgTeacher = hourMap.getOrDefault("teacher", "");
-            String sgSubject = hourMap.getOrDefault("subject", "");
+        for (int g : candidates) {
+            if (!data.hasSubgroupSlot(g, slot)) continue;
+            String sg = data.subgroupName(g);
+            String sgTeacher = data.subgroupTeacher(g, slot);
+            String sgSubject = data.subgroupSubject(g, slot);
             // Normalize quick matches
-            if (!sgTeacher.isBlank() && sgTeacher.equals(teacherName)) return extractGroupPart(sg);
+            if (!sgTeacher.isBlank() && sgTeacher.equals(teacherName)) return ClassNames.extractGroupPart(sg);
             if (!sgSubject.isBlank() && !subject.isBlank()) {
                 String subjLow = subject.toLowerCase();
                 String sgSubjLow = sgSubject.toLowerCase();
                 if (subjLow.equals(sgSubjLow) || subjLow.contains(sgSubjLow) || sgSubjLow.contains(subjLow)) {
-                    return extractGroupPart(sg);
+                    return ClassNames.extractGroupPart(sg);
                 }
             }
         }
         return null;
     }
 
-    private String extractGroupPart(String subgroupId) {
-        if (subgroupId == null) return null;
-        int idx = subgroupId.indexOf(':');
-        if (idx >= 0 && idx + 1 < subgroupId.length()) return subgroupId.substring(idx + 1);
-        return null;
-    }
-
-    /**
-     * Heuristic to detect automatically-created subgroup identifiers.
-     * We treat subgroup IDs as automatic when the part after ':' is empty
-     * or contains the word "auto" (case-insensitive) or obvious markers like "(auto)".
-     */
-    private boolean isAutoSubgroup(String subgroupId) {
-        if (subgroupId == null) return false;
-        int idx = subgroupId.indexOf(':');
-        if (idx < 0) return false; // no subgroup suffix -> it's a class identifier, not an auto subgroup
-        String part = subgroupId.substring(idx + 1).trim();
-        if (part.isEmpty()) return true;
-        String low = part.toLowerCase();
-        if (low.contains("auto") || low.contains("(auto)")) return true;
-        // other heuristics: sometimes autogenerated labels include "-" with digits only like "-1" or similar;
-        // we avoid marking common valid labels like G1/G2 as automatic.
-        return false;
-    }
-
-    // Extract the class part before any subgroup suffix like ":G1"
-    private String extractClassBase(String subgroupKey){
-        if (subgroupKey == null) return "";
-        int idx = subgroupKey.indexOf(':');
-        return idx > 0 ? subgroupKey.substring(0, idx) : subgroupKey;
-    }
-
-    // Remove placeholder phrases like "مجموعات فرعية تلقائية" from class names
-    private String sanitizeClassName(String name){
-        if (name == null) return "";
-        String n = name;
-        String[] tokens = new String[]{
-                "مجموعات فرعية تلقائية",
-                "مجموعة فرعية تلقائية",
-                "sous-groupes automatiques",
-                "sous groupe automatique",
-                "automatic subgroups",
-                "automatic subgroup",
-                "auto subgroups",
-                "auto subgroup"
-        };
-        for (String t : tokens){
-            n = n.replace(t, "");
-        }
-        // collapse extra whitespace and trim
-        n = n.replaceAll("\\s{2,}", " ").trim();
-        return n;
-    }
-
     // Detect known automatic placeholder class names to hide from lists
     private boolean isAutoPlaceholderClassName(String name) {
         if (name == null) return true;
@@ -648,147 +787,83 @@ public class TimetableController {
         return false;
     }
 
-    private boolean canMergeTeacherSlots(Map<String,Object> a, Map<String,Object> b) {
-        // same day, same period, consecutive hours, same subject, same teacher, same subgroup and same room
-        if (!Objects.equals(a.get("day"), b.get("day"))) return false;
-        if (!Objects.equals(a.get("period"), b.get("period"))) return false;
-        if (!Objects.equals(a.get("subject"), b.get("subject"))) return false;
-        if (!Objects.equals(a.get("teacher"), b.get("teacher"))) return false;
-        if (!Objects.equals(a.get("subgroup"), b.get("subgroup"))) return false;
-        if (!Objects.equals(a.get("room"), b.get("room"))) return false;
-        return areHoursConsecutive((String)a.get("hourId"), (String)b.get("hourId"));
-    }
-
-    private boolean areHoursConsecutive(String h1, String h2) {
-        // expect format H1..H4 or merged like H1-H2
-        int end1 = parseHourEnd(h1);
-        int start2 = parseHourStart(h2);
-        return end1 >= 0 && start2 >= 0 && end1 + 1 == start2;
-    }
-
-    private int parseHourStart(String hourId) {
-        // H1 or H1-H2 -> return numeric start
-        if (hourId == null) return -1;
-        String[] parts = hourId.split("-", 2);
-        try {
-            if (parts[0].startsWith("H")) return Integer.parseInt(parts[0].substring(1));
-        } catch (Exception e) { }
-        return -1;
-    }
-
-    private int parseHourEnd(String hourId) {
-        // H1 or H1-H2 -> return numeric end
-        if (hourId == null) return -1;
-        String[] parts = hourId.split("-", 2);
-        try {
-            if (parts.length == 2 && parts[1].startsWith("H")) return Integer.parseInt(parts[1].substring(1));
-            if (parts[0].startsWith("H")) return Integer.parseInt(parts[0].substring(1));
-        } catch (Exception e) { }
-        return -1;
-    }
-
-    private String mergeHourIds(String h1, String h2) {
-        int start = parseHourStart(h1);
-        int end = parseHourEnd(h2);
-        if (start > 0 && end > 0) return "H" + start + "-H" + end;
-        return h1 + "," + h2;
-    }
-
-    private String mapHourRange(String hStart, String hEnd, boolean morning) {
-        String t1 = TimetableParser.mapHourToTimeslot(morning, hStart);
-        String t2 = TimetableParser.mapHourToTimeslot(morning, hEnd);
-        // t1 = "08:30 - 09:30" ; t2 = "09:30 - 10:30"
-        String start = t1.split(" - ")[0];
-        String end = t2.split(" - ")[1];
-        return start + " - " + end;
+    private boolean canMergeTeacherSlots(SlotDto a, SlotDto b) {
+        // consecutive hours of the same half-day (ordinals), same subject, same teacher, same subgroup and same room
+        if (!slotCodec.consecutive(a.last(), b.first())) return false;
+        if (!Objects.equals(a.subject(), b.subject())) return false;
+        if (!Objects.equals(a.teacher(), b.teacher())) return false;
+        if (!Objects.equals(a.subgroup(), b.subgroup())) return false;
+        if (!Objects.equals(a.room(), b.room())) return false;
+        return true;
     }
 
     @GetMapping(value = "/timetable/subgroup/{name}", produces = "application/json")
-    public List<Map<String,Object>> timetableForSubgroup(
+    public ResponseEntity<?> timetableForSubgroup(
         @PathVariable("name") String name,
         @RequestParam(value = "labelMode", defaultValue = "diff") String labelMode,
         @RequestParam(value = "labelSubjects", required = false) String labelSubjects,
-        HttpSession session,
+        HttpSession session, ServletWebRequest request,
         @RequestHeader(value = "X-Session-ID", required = false) String sessionId
     ) {
-        UserData userData = getUserData(session, sessionId);
-        List<Map<String,Object>> res = new ArrayList<>();
+        // Lien de classe partagé : les requêtes identiques simultanées attendent un seul calcul
+        SessionSnapshot snapshot = snapshot(session, sessionId);
+        if (notModified(request, snapshot)) return null;
+        if (DEFAULT_LABEL_MODE.equals(labelMode) && labelSubjects == null) {
+            ResponseEntity<?> view = materializedView(request, snapshot, "subgroup", name);
+            if (view != null) return view;
+        }
+        String options = labelMode + "\u0001" + Objects.toString(labelSubjects, "");
+        return ResponseEntity.ok(requestCoalescer.execute(RequestCoalescer.Key.of(snapshot, "timetable-subgroup", name, options),
+                () -> timetableForSubgroup(name, labelMode, labelSubjects, snapshot)));
+    }
 
-        // Find all subgroups that match the (sanitized) class name (exclude automatic subgroups)
-        String target = sanitizeClassName(name);
-        List<String> matchingSubgroups = userData.subgroups.keySet().stream()
-            .filter(sg -> {
-                String base = extractClassBase(sg);
-                return sanitizeClassName(base).equals(target) && !isAutoSubgroup(sg);
-            })
-            .toList();
+    /**
+     * Emploi du temps d'une classe dans une version donnée des données (exports en lot)
+     */
+    public List<SlotDto> timetableForSubgroup(String name, String labelMode, String labelSubjects,
+                                                         SessionSnapshot snapshot) {
+        List<SlotDto> res = new ArrayList<>();
 
-        // Aggregate entries by (dayRaw, hour) -> subgroup -> details
-        // key format: dayRaw::hour
-        Map<String, Map<String, Map<String, String>>> aggregated = new HashMap<>();
-
-        for (String subgroup : matchingSubgroups) {
-            var schedule = userData.subgroups.get(subgroup);
-            if (schedule == null) continue;
-            for (var dayEntry : schedule.entrySet()) {
-                String dayRaw = dayEntry.getKey();
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String hour = hourEntry.getKey();
-                    Map<String, String> details = hourEntry.getValue();
-                    String key = dayRaw + "::" + hour;
-                    aggregated.putIfAbsent(key, new LinkedHashMap<>());
-                    // store under subgroup key (full subgroup name)
-                    aggregated.get(key).put(subgroup, details);
-                }
-            }
-        }
+        TimetableData data = snapshot.data();
 
-        // Ensure each aggregated timeslot key has an entry for every matching subgroup.
-        // If a subgroup has no entry at that timeslot, insert an empty details map so
-        // it will be considered "different" from subgroups that do have a session.
-        for (String key : new ArrayList<>(aggregated.keySet())) {
-            Map<String, Map<String, String>> per = aggregated.get(key);
-            for (String sg : matchingSubgroups) {
-                per.putIfAbsent(sg, new HashMap<>());
+        // Find all subgroups that match the (sanitized) class name (exclude automatic subgroups)
+        String target = ClassNames.sanitizeClassName(name);
+        List<Integer> matchingSubgroups = data.classIndex().regularSubgroups(target);
+
+        // Prepare label subject set (case-insensitive, partial match)
+        List<String> labelListLower = new ArrayList<>();
+        if (labelSubjects != null && !labelSubjects.isBlank()) {
+            for (String s : labelSubjects.split(",")) {
+                String trimmed = s.trim();
+                if (!trimmed.isEmpty()) labelListLower.add(trimmed.toLowerCase());
             }
         }
 
-        // Build SlotDto list from aggregated data
-        for (var entry : aggregated.entrySet()) {
-            String key = entry.getKey();
-            String[] parts = key.split("::", 2);
-            String dayRaw = parts[0];
-            String hour = parts[1];
-            String day = TimetableParser.normalizeDayName(dayRaw);
-            boolean morning = dayRaw.toLowerCase().endsWith("_m");
-            String timeslot = TimetableParser.mapHourToTimeslot(morning, hour);
-
-            Map<String, Map<String, String>> perGroup = entry.getValue();
+        // Aggregate entries by timeslot: every slot used by at least one matching subgroup.
+        // A subgroup with no session at that slot has empty details, so it will be considered
+        // "different" from subgroups that do have a session.
+        for (int slot = 0; slot < data.slotCount(); slot++) {
+            boolean used = false;
+            for (int g : matchingSubgroups) {
+                if (data.hasSubgroupSlot(g, slot)) { used = true; break; }
+            }
+            if (!used) continue;
 
             // Build a set of distinct detail signatures to detect sameness.
             // Consider sessions identical if subject and teacher match (case-insensitive, trimmed).
             Set<String> signatures = new HashSet<>();
-            for (Map<String, String> det : perGroup.values()) {
-                String subj = det.getOrDefault("subject", "").trim().toLowerCase();
-                String teach = det.getOrDefault("teacher", "").trim().toLowerCase();
+            for (int g : matchingSubgroups) {
+                String subj = data.subgroupSubject(g, slot).trim().toLowerCase();
+                String teach = data.subgroupTeacher(g, slot).trim().toLowerCase();
                 String sig = subj + "|" + teach;
                 signatures.add(sig);
             }
 
-            // Prepare label subject set (case-insensitive, partial match)
-            List<String> labelListLower = new ArrayList<>();
-            if (labelSubjects != null && !labelSubjects.isBlank()) {
-                for (String s : labelSubjects.split(",")) {
-                    String trimmed = s.trim();
-                    if (!trimmed.isEmpty()) labelListLower.add(trimmed.toLowerCase());
-                }
-            }
-
             if (signatures.size() == 1) {
                 // All groups share the same session. By default emit a single combined slot,
                 // but if labelMode=always OR the subject is listed in labelSubjects, emit per-subgroup labeled slots.
-                Map<String, String> any = perGroup.values().iterator().next();
-                String subjectCommon = any.getOrDefault("subject", "");
+                int any = matchingSubgroups.get(0);
+                String subjectCommon = data.subgroupSubject(any, slot);
 
                 boolean forceLabel = "always".equalsIgnoreCase(labelMode);
                 if (!forceLabel && !labelListLower.isEmpty()) {
@@ -800,264 +875,132 @@ public class TimetableController {
                 }
 
                 if (!forceLabel) {
-                    String teacher = any.getOrDefault("teacher", "");
-                    String room = any.getOrDefault("room", "");
-            res.add(slotEntry(day, morning ? "matin" : "soir", hour, timeslot,
-                subjectCommon, teacher, name, room, userData));
+                    String teacher = data.subgroupTeacher(any, slot);
+                    String room = data.subgroupRoom(any, slot);
+                    res.add(slotEntry(data, slot, subjectCommon, teacher, name, room, snapshot));
                 } else {
                     // Emit one entry per subgroup with group label appended
-                    for (var sgEntry : perGroup.entrySet()) {
-                        String subgroup = sgEntry.getKey();
-                        Map<String, String> det = sgEntry.getValue();
-                        String subject = det.getOrDefault("subject", "");
-                        String teacher = det.getOrDefault("teacher", "");
-                        String room = det.getOrDefault("room", "");
-                        // If subgroup has no session (no subject and no teacher and no room), emit empty fields
-                        boolean emptySession = (subject == null || subject.isBlank())
-                                && (teacher == null || teacher.isBlank())
-                                && (room == null || room.isBlank());
-
-                        if (!emptySession) {
-                            // Class view: append subgroup label (G1/G2) to subject to indicate subgroup session
-                            String label = extractGroupPart(subgroup);
-                            if (label != null && !label.isBlank()) {
-                                subject = subject + " (" + label + ")";
-                            }
-                        } else {
-                            // keep subject/teacher/room empty and do not append group label
-                            subject = "";
-                            teacher = "";
-                            room = "";
-                        }
-
-                        // Use the actual subgroup identifier in the SlotDto.subgroup field so the UI
-                        // can show which subgroup (e.g. "3APIC-5:G1"). Do not use the path variable 'name' here.
-                        res.add(slotEntry(day, morning ? "matin" : "soir", hour, timeslot,
-                                subject, teacher, subgroup, room, userData));
-                    }
+                    addLabeledSubgroupSlots(res, data, matchingSubgroups, slot, snapshot);
                 }
             } else {
                 // Different sessions across groups -> emit one entry per subgroup and append group label to subject
-                for (var sgEntry : perGroup.entrySet()) {
-                    String subgroup = sgEntry.getKey();
-                    Map<String, String> det = sgEntry.getValue();
-                    String subject = det.getOrDefault("subject", "");
-                    String teacher = det.getOrDefault("teacher", "");
-                    String room = det.getOrDefault("room", "");
-
-                    boolean emptySession = (subject == null || subject.isBlank())
-                            && (teacher == null || teacher.isBlank())
-                            && (room == null || room.isBlank());
-
-                        if (!emptySession) {
-                            // Append subgroup label to subject for clarity in class timetable
-                            String label = extractGroupPart(subgroup);
-                            if (label != null && !label.isBlank()) {
-                                subject = subject + " (" + label + ")";
-                            }
-                        } else {
-                            // keep fields empty and do not append a label
-                            subject = "";
-                            teacher = "";
-                            room = "";
-                        }
-
-                        // Use subgroup identifier, not the class name
-                        res.add(slotEntry(day, morning ? "matin" : "soir", hour, timeslot,
-                                subject, teacher, subgroup, room, userData));
-                }
+                addLabeledSubgroupSlots(res, data, matchingSubgroups, slot, snapshot);
             }
         }
 
         // Sort by day and time
-        res.sort((a, b) -> {
-            int dayCompare = getDayOrder((String)a.get("day")).compareTo(getDayOrder((String)b.get("day")));
-            if (dayCompare != 0) return dayCompare;
-
-            if (!Objects.equals(a.get("period"), b.get("period"))) {
-                return Objects.equals(a.get("period"), "matin") ? -1 : 1;
-            }
-
-            return ((String)a.get("hourId")).compareTo((String)b.get("hourId"));
-        });
+        res.sort(SlotDto.CHRONOLOGICAL);
 
         return res;
     }
 
-    @GetMapping(value = "/rooms/vacant", produces = "application/json")
-    public List<Map<String,Object>> listVacantRooms(HttpSession session,
-                                                     @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
-        UserData userData = getUserData(session, sessionId);
-        // Collect all rooms seen anywhere (from both subgroups and teachers)
-        Set<String> allRooms = new TreeSet<>();
-        // From subgroups file
-        for (var sgSchedule : userData.subgroups.values()) {
-            for (var dayEntry : sgSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    Map<String, String> det = hourEntry.getValue();
-                    String room = det.getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRooms.add(room);
-                }
-            }
-        }
-        // From teachers file
-        for (var tSchedule : userData.teachers.values()) {
-            for (var dayEntry : tSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    Map<String, String> det = hourEntry.getValue();
-                    String room = det.getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRooms.add(room);
-                }
-            }
-        }
-        // From activities file
-        for (var a : userData.activities) {
-            String room = (a.room == null ? "" : a.room.trim());
-            if (!room.isEmpty()) allRooms.add(room);
-        }
-        
-        // Aggregate used rooms per (dayRaw,hour) from both datasets
-        Map<String, Set<String>> used = new HashMap<>(); // key dayRaw::hour -> rooms
-        // From subgroups
-        for (var sgSchedule : userData.subgroups.entrySet()) {
-            for (var dayEntry : sgSchedule.getValue().entrySet()) {
-                String dayRaw = dayEntry.getKey();
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String hour = hourEntry.getKey();
-                    Map<String, String> det = hourEntry.getValue();
-                    String room = det.getOrDefault("room", "").trim();
-                    if (room.isEmpty()) continue;
-                    String key = dayRaw + "::" + hour;
-                    used.computeIfAbsent(key, k -> new HashSet<>()).add(room);
+    private void addLabeledSubgroupSlots(List<SlotDto> res, TimetableData data, List<Integer> subgroups,
+                                         int slot, SessionSnapshot snapshot) {
+        for (int g : subgroups) {
+            String subgroup = data.subgroupName(g);
+            String subject = data.subgroupSubject(g, slot);
+            String teacher = data.subgroupTeacher(g, slot);
+            String room = data.subgroupRoom(g, slot);
+            // If subgroup has no session (no subject and no teacher and no room), emit empty fields
+            boolean emptySession = subject.isBlank() && teacher.isBlank() && room.isBlank();
+
+            if (!emptySession) {
+                // Class view: append subgroup label (G1/G2) to subject to indicate subgroup session
+                String label = ClassNames.extractGroupPart(subgroup);
+                if (label != null && !label.isBlank()) {
+                    subject = subject + " (" + label + ")";
                 }
+            } else {
+                // keep subject/teacher/room empty and do not append group label
+                subject = "";
+                teacher = "";
+                room = "";
             }
+
+            // Use the actual subgroup identifier in the SlotDto.subgroup field so the UI
+            // can show which subgroup (e.g. "3APIC-5:G1"). Do not use the path variable 'name' here.
+            res.add(slotEntry(data, slot, subject, teacher, subgroup, room, snapshot));
         }
-        // From teachers
-        for (var tSchedule : userData.teachers.entrySet()) {
-            for (var dayEntry : tSchedule.getValue().entrySet()) {
-                String dayRaw = dayEntry.getKey();
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String hour = hourEntry.getKey();
-                    Map<String, String> det = hourEntry.getValue();
-                    String room = det.getOrDefault("room", "").trim();
-                    if (room.isEmpty()) continue;
-                    String key = dayRaw + "::" + hour;
-                    used.computeIfAbsent(key, k -> new HashSet<>()).add(room);
-                }
+    }
+
+    @GetMapping(value = "/rooms/vacant", produces = "application/json")
+    public List<SlotDto> listVacantRooms(HttpSession session, ServletWebRequest request,
+                                                     @RequestHeader(value = "X-Session-ID", required = false) String sessionId,
+                                                     @RequestParam(value = "day", required = false) String day,
+                                                     @RequestParam(value = "period", required = false) String period,
+                                                     @RequestParam(value = "hourFrom", required = false) String hourFrom,
+                                                     @RequestParam(value = "hourTo", required = false) String hourTo) {
+        SessionSnapshot snapshot = snapshot(session, sessionId);
+        if (notModified(request, snapshot)) return null;
+        return listVacantRooms(snapshot, day, period, hourFrom, hourTo);
+    }
+
+    /**
+     * Salles vacantes dans une version donnée des données (PDF)
+     */
+    public List<SlotDto> listVacantRooms(SessionSnapshot snapshot, String day, String period,
+                                                     String hourFrom, String hourTo) {
+        TimetableData data = snapshot.data();
+        RoomOccupancy occupancy = data.roomOccupancy();
+        int fromHour = hourFrom == null || hourFrom.isBlank() ? Integer.MIN_VALUE : SlotCodec.hourStart(hourFrom.trim());
+        int toHour = hourTo == null || hourTo.isBlank() ? Integer.MAX_VALUE : SlotCodec.hourEnd(hourTo.trim());
+
+        // Build SlotDto entries with vacant rooms for each used slot (complement of the occupancy bitset)
+        List<SlotDto> res = new ArrayList<>();
+        for (int slot = 0; slot < data.slotCount(); slot++) {
+            if (!occupancy.isUsed(slot)) continue;
+            String slotDay = dayName(data, slot);
+            String slotPeriod = data.isMorning(slot) ? "matin" : "soir";
+
+            // Filtres optionnels : jour, période (matin/soir), plage d'heures (ex: H2..H3)
+            if (day != null && !day.isBlank() && !slotDay.equalsIgnoreCase(day.trim())) continue;
+            if (period != null && !period.isBlank() && !slotPeriod.equalsIgnoreCase(period.trim())) continue;
+            if (fromHour != Integer.MIN_VALUE || toHour != Integer.MAX_VALUE) {
+                int h = data.slotHour(slot);
+                if (h < fromHour || h > toHour) continue;
             }
-        }
-        // From activities
-        for (var a : userData.activities) {
-            String room = (a.room == null ? "" : a.room.trim());
-            if (room.isEmpty()) continue;
-            String key = a.dayRaw + "::" + a.hour;
-            used.computeIfAbsent(key, k -> new HashSet<>()).add(room);
-        }
 
-        // Build SlotDto entries with vacant rooms for each key
-    List<Map<String,Object>> res = new ArrayList<>();
-        for (var entry : used.entrySet()) {
-            String key = entry.getKey();
-            String[] parts = key.split("::", 2);
-            String dayRaw = parts[0];
-            String hour = parts[1];
-            String day = TimetableParser.normalizeDayName(dayRaw);
-            boolean morning = dayRaw.toLowerCase().endsWith("_m");
-            String timeslot = TimetableParser.mapHourToTimeslot(morning, hour);
-
-            Set<String> usedRooms = entry.getValue();
-            for (String room : allRooms) {
-                if (!usedRooms.contains(room)) {
-                    // subject empty to keep neutral color; teacher empty; subgroup carries the room name (renamed)
-                    String renamedRoom = applyRoomMapping(room, userData);
-                    res.add(slotEntry(day, morning ? "matin" : "soir", hour, timeslot,
-                        "", "", renamedRoom, "", userData));
-                }
+            BitSet vacant = occupancy.vacantRooms(slot);
+            for (int r = vacant.nextSetBit(0); r >= 0; r = vacant.nextSetBit(r + 1)) {
+                // subject empty to keep neutral color; teacher empty; subgroup carries the room name (renamed)
+                String renamedRoom = applyRoomMapping(data.roomName(r), snapshot);
+                res.add(slotEntry(data, slot, "", "", renamedRoom, "", snapshot));
             }
         }
 
         // Sort for stable output
-        res.sort((a, b) -> {
-            int dayCompare = getDayOrder((String)a.get("day")).compareTo(getDayOrder((String)b.get("day")));
-            if (dayCompare != 0) return dayCompare;
-            if (!Objects.equals(a.get("period"), b.get("period"))) return Objects.equals(a.get("period"), "matin") ? -1 : 1;
-            int hourCmp = ((String)a.get("hourId")).compareTo((String)b.get("hourId"));
-            if (hourCmp != 0) return hourCmp;
-            return ((String)a.get("subgroup")).compareToIgnoreCase((String)b.get("subgroup")); // here subgroup field holds the room name
-        });
+        // here subgroup field holds the room name
+        res.sort(SlotDto.CHRONOLOGICAL.thenComparing(SlotDto::subgroup, String.CASE_INSENSITIVE_ORDER));
         return res;
     }
 
     @GetMapping(value = "/rooms/vacant/diagnostics", produces = "application/json")
     public Map<String,Object> vacantDiagnostics(HttpSession session) {
-        UserData userData = getUserData(session);
+        SessionSnapshot snapshot = getUserData(session).snapshot();
+        TimetableData data = snapshot.data();
         Map<String,Object> out = new LinkedHashMap<>();
-        // collect rooms from all datasets
-        Set<String> allRooms = new TreeSet<>();
-        for (var sgSchedule : userData.subgroups.values()) {
-            for (var dayEntry : sgSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRooms.add(room);
-                }
-            }
-        }
-        for (var tSchedule : userData.teachers.values()) {
-            for (var dayEntry : tSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRooms.add(room);
-                }
-            }
-        }
-        for (var a : userData.activities) {
-            String room = (a.room == null ? "" : a.room.trim());
-            if (!room.isEmpty()) allRooms.add(room);
+        RoomOccupancy occupancy = data.roomOccupancy();
+        int usedSlots = 0;
+        for (int slot = 0; slot < data.slotCount(); slot++) {
+            if (occupancy.isUsed(slot)) usedSlots++;
         }
 
-        Map<String, Set<String>> used = new HashMap<>();
-        for (var sgSchedule : userData.subgroups.entrySet()) {
-            for (var dayEntry : sgSchedule.getValue().entrySet()) {
-                String dayRaw = dayEntry.getKey();
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String hour = hourEntry.getKey();
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (room.isEmpty()) continue;
-                    used.computeIfAbsent(dayRaw+"::"+hour, k->new HashSet<>()).add(room);
-                }
-            }
-        }
-        for (var tSchedule : userData.teachers.entrySet()) {
-            for (var dayEntry : tSchedule.getValue().entrySet()) {
-                String dayRaw = dayEntry.getKey();
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String hour = hourEntry.getKey();
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (room.isEmpty()) continue;
-                    used.computeIfAbsent(dayRaw+"::"+hour, k->new HashSet<>()).add(room);
-                }
-            }
-        }
-        for (var a : userData.activities) {
-            String room = (a.room == null ? "" : a.room.trim());
-            if (room.isEmpty()) continue;
-            used.computeIfAbsent(a.dayRaw+"::"+a.hour, k->new HashSet<>()).add(room);
-        }
-
-        out.put("teachersCount", userData.teachers.size());
-        out.put("subgroupsCount", userData.subgroups.size());
-        out.put("activitiesCount", userData.activities.size());
-        out.put("allRoomsCount", allRooms.size());
-        out.put("usedKeysCount", used.size());
+        out.put("teachersCount", data.teacherCount());
+        out.put("subgroupsCount", data.subgroupCount());
+        out.put("activitiesCount", data.activityCount());
+        out.put("allRoomsCount", data.roomCount());
+        out.put("usedKeysCount", usedSlots);
 
         List<Map<String,Object>> samples = new ArrayList<>();
-        int i = 0;
-        for (var e : used.entrySet()) {
-            if (i++ >= 5) break;
+        for (int slot = 0; slot < data.slotCount() && samples.size() < 5; slot++) {
+            if (!occupancy.isUsed(slot)) continue;
             Map<String,Object> s = new LinkedHashMap<>();
-            s.put("key", e.getKey());
-            s.put("usedRoomsCount", e.getValue().size());
-            s.put("usedRooms", new TreeSet<>(e.getValue()));
+            s.put("key", data.dayRaw(slot) + "::" + data.hour(slot));
+            s.put("usedRoomsCount", occupancy.occupiedCount(slot));
+            Set<String> usedRooms = new TreeSet<>();
+            BitSet occupied = occupancy.occupiedRooms(slot);
+            for (int r = occupied.nextSetBit(0); r >= 0; r = occupied.nextSetBit(r + 1)) usedRooms.add(data.roomName(r));
+            s.put("usedRooms", usedRooms);
             samples.add(s);
         }
         out.put("usedSamples", samples);
@@ -1068,38 +1011,21 @@ public class TimetableController {
      * Liste toutes les salles disponibles (avec renommage appliqué)
      */
     @GetMapping(value = "/rooms/list", produces = "application/json")
-    public List<String> listRooms(HttpSession session,
+    public List<String> listRooms(HttpSession session, ServletWebRequest request,
                                    @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
-        UserData userData = getUserData(session, sessionId);
-        Set<String> allRoomsOriginal = new TreeSet<>();
-        // Collecter toutes les salles depuis subgroups
-        for (var sgSchedule : userData.subgroups.values()) {
-            for (var dayEntry : sgSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRoomsOriginal.add(room);
-                }
-            }
-        }
-        // Collecter depuis teachers
-        for (var tSchedule : userData.teachers.values()) {
-            for (var dayEntry : tSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRoomsOriginal.add(room);
-                }
-            }
-        }
-        // Collecter depuis activities
-        for (var a : userData.activities) {
-            String room = (a.room == null ? "" : a.room.trim());
-            if (!room.isEmpty()) allRoomsOriginal.add(room);
-        }
-        
-        // Appliquer le renommage et retourner la liste triée
+        SessionSnapshot snapshot = getUserData(session, sessionId).snapshot();
+        if (notModified(request, snapshot)) return null;
+        return roomDisplayNames(snapshot);
+    }
+
+    /**
+     * Noms affichés (renommage appliqué) de toutes les salles, triés et sans doublon
+     */
+    private List<String> roomDisplayNames(SessionSnapshot snapshot) {
+        TimetableData data = snapshot.data();
         Set<String> renamedRooms = new TreeSet<>();
-        for (String originalRoom : allRoomsOriginal) {
-            String renamedRoom = applyRoomMapping(originalRoom, userData);
+        for (int r = 0; r < data.roomCount(); r++) {
+            String renamedRoom = applyRoomMapping(data.roomName(r), snapshot);
             renamedRooms.add(renamedRoom);
         }
         return new ArrayList<>(renamedRooms);
@@ -1109,98 +1035,48 @@ public class TimetableController {
      * Récupère l'emploi du temps d'une salle spécifique
      */
     @GetMapping(value = "/timetable/room/{name}", produces = "application/json")
-    public List<Map<String,Object>> timetableForRoom(@PathVariable("name") String roomName, 
-                                                      HttpSession session,
-                                                      @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
-        UserData userData = getUserData(session, sessionId);
+    public ResponseEntity<?> timetableForRoom(@PathVariable("name") String roomName, 
+                                              HttpSession session, ServletWebRequest request,
+                                              @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        SessionSnapshot snapshot = getUserData(session, sessionId).snapshot();
+        if (notModified(request, snapshot)) return null;
+        ResponseEntity<?> view = materializedView(request, snapshot, "room", roomName);
+        if (view != null) return view;
+        return ResponseEntity.ok(timetableForRoom(roomName, snapshot));
+    }
+
+    /**
+     * Emploi du temps d'une salle dans une version donnée des données (vues pré-calculées)
+     */
+    public List<SlotDto> timetableForRoom(String roomName, SessionSnapshot snapshot) {
         // Trouver le nom original de la salle (si c'est un nom renommé)
-        String originalRoomName = findOriginalRoomName(roomName, userData);
-        
-        // Utiliser une Map pour agréger et dédupliquer les créneaux
-        // Clé: dayRaw::hour::subject::teacher::classBase
-        Map<String, Map<String,Object>> aggregated = new LinkedHashMap<>();
+        String originalRoomName = findOriginalRoomName(roomName, snapshot);
         
-        // Chercher dans tous les emplois du temps (subgroups) les créneaux utilisant cette salle
-        for (var sgEntry : userData.subgroups.entrySet()) {
-            String subgroupId = sgEntry.getKey();
-            String classBase = extractClassBase(subgroupId);
-            // Nettoyer le nom de la classe (supprimer les marqueurs automatiques)
-            String cleanedClass = sanitizeClassName(classBase);
-            
-            // Ignorer les classes vides après nettoyage (qui ne contenaient que des marqueurs)
-            if (cleanedClass.isEmpty()) continue;
-            
-            for (var dayEntry : sgEntry.getValue().entrySet()) {
-                String dayRaw = dayEntry.getKey();
-                String day = TimetableParser.normalizeDayName(dayRaw);
-                boolean morning = dayRaw.toLowerCase().endsWith("_m");
-                
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String hour = hourEntry.getKey();
-                    Map<String, String> det = hourEntry.getValue();
-                    String room = det.getOrDefault("room", "").trim();
-                    
-                    // Vérifier si c'est la salle recherchée (comparer avec le nom original)
-                    if (room.equalsIgnoreCase(originalRoomName)) {
-                        String timeslot = TimetableParser.mapHourToTimeslot(morning, hour);
-                        String subject = det.getOrDefault("subject", "");
-                        String teacher = det.getOrDefault("teacher", "");
-                        
-                        // Créer une clé unique pour ce créneau (déduplication)
-                        String key = dayRaw + "::" + hour + "::" + subject + "::" + teacher + "::" + cleanedClass;
-                        
-                        // Si la clé n'existe pas encore, ajouter l'entrée
-                        // Note: slotEntry() appliquera automatiquement le renommage via applyRoomMapping()
-                        if (!aggregated.containsKey(key)) {
-                            aggregated.put(key, slotEntry(day, morning ? "matin" : "soir", hour, timeslot,
-                                    subject, teacher, cleanedClass, room, userData));
-                        }
-                    }
-                }
-            }
+        // Index inversé salle -> créneaux, construit à l'upload et déjà dédupliqué par classe
+        TimetableData data = snapshot.data();
+        RoomSchedule schedule = data.roomSchedule(originalRoomName);
+        List<SlotDto> res = new ArrayList<>(schedule.size());
+        for (int i = 0; i < schedule.size(); i++) {
+            int slot = schedule.slot(i);
+            // Note: slotEntry() appliquera automatiquement le renommage via applyRoomMapping()
+            res.add(slotEntry(data, slot, schedule.subject(i), schedule.teacher(i), schedule.className(i), schedule.room(i), snapshot));
         }
         
-        // Convertir en liste
-        List<Map<String,Object>> res = new ArrayList<>(aggregated.values());
-        
         // Trier par jour et heure
-        res.sort((a, b) -> {
-            int dayCompare = getDayOrder((String)a.get("day")).compareTo(getDayOrder((String)b.get("day")));
-            if (dayCompare != 0) return dayCompare;
-
-            if (!Objects.equals(a.get("period"), b.get("period"))) {
-                return Objects.equals(a.get("period"), "matin") ? -1 : 1;
-            }
-
-            return ((String)a.get("hourId")).compareTo((String)b.get("hourId"));
-        });
+        res.sort(SlotDto.CHRONOLOGICAL);
         
         // Fusionner les créneaux consécutifs identiques
-        List<Map<String,Object>> merged = new ArrayList<>();
+        List<SlotDto> merged = new ArrayList<>();
         for (int i = 0; i < res.size(); i++) {
-            Map<String,Object> cur = res.get(i);
+            SlotDto cur = res.get(i);
             if (merged.isEmpty()) {
                 merged.add(cur);
                 continue;
             }
-            Map<String,Object> last = merged.get(merged.size() - 1);
+            SlotDto last = merged.get(merged.size() - 1);
             if (canMergeRoomSlots(last, cur)) {
                 // Fusionner les créneaux
-                String newHourId = mergeHourIds((String)last.get("hourId"), (String)cur.get("hourId"));
-                String newTimeslot = mapHourRange((String)last.get("hourId"), (String)cur.get("hourId"), 
-                                                  Objects.equals(last.get("period"), "matin"));
-                Map<String,Object> newSlot = slotEntry(
-                        (String)last.get("day"),
-                        (String)last.get("period"),
-                        newHourId,
-                        newTimeslot,
-                        (String)last.get("subject"),
-                        (String)last.get("teacher"),
-                        (String)last.get("subgroup"),
-                        (String)last.get("room"),
-                        userData
-                );
-                merged.set(merged.size() - 1, newSlot);
+                merged.set(merged.size() - 1, mergedEntry(last, cur, snapshot));
             } else {
                 merged.add(cur);
             }
@@ -1209,17 +1085,110 @@ public class TimetableController {
         return merged;
     }
     
-    private boolean canMergeRoomSlots(Map<String,Object> a, Map<String,Object> b) {
-        // Mêmes critères que pour les profs: même jour, période, matière, prof, classe
-        if (!Objects.equals(a.get("day"), b.get("day"))) return false;
-        if (!Objects.equals(a.get("period"), b.get("period"))) return false;
-        if (!Objects.equals(a.get("subject"), b.get("subject"))) return false;
-        if (!Objects.equals(a.get("teacher"), b.get("teacher"))) return false;
-        if (!Objects.equals(a.get("subgroup"), b.get("subgroup"))) return false;
-        if (!Objects.equals(a.get("room"), b.get("room"))) return false;
-        return areHoursConsecutive((String)a.get("hourId"), (String)b.get("hourId"));
+    private boolean canMergeRoomSlots(SlotDto a, SlotDto b) {
+        // Mêmes critères que pour les profs: heures consécutives de la même demi-journée, matière, prof, classe
+        if (!slotCodec.consecutive(a.last(), b.first())) return false;
+        if (!Objects.equals(a.subject(), b.subject())) return false;
+        if (!Objects.equals(a.teacher(), b.teacher())) return false;
+        if (!Objects.equals(a.subgroup(), b.subgroup())) return false;
+        if (!Objects.equals(a.room(), b.room())) return false;
+        return true;
     }
     
+    // ==================== EXPORTS EN LOT (NDJSON) ====================
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Emplois du temps de tous les professeurs en une réponse NDJSON : une ligne
+     * {"name": ..., "timetable": [...]} par professeur, dans l'ordre des noms affichés
+     */
+    @GetMapping("/timetable/teachers/all")
+    public ResponseEntity<StreamingResponseBody> allTeacherTimetables(HttpSession session, ServletWebRequest request,
+                                                                      @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        SessionSnapshot snapshot = snapshot(session, sessionId);
+        if (notModified(request, snapshot)) return null;
+        return ndjson(snapshot, "teacher", teacherDisplayNames(snapshot), true, name -> timetableForTeacher(name, snapshot));
+    }
+
+    /**
+     * Emplois du temps de toutes les classes en NDJSON (mêmes options d'affichage que /timetable/subgroup/{name})
+     */
+    @GetMapping("/timetable/subgroups/all")
+    public ResponseEntity<StreamingResponseBody> allSubgroupTimetables(
+        @RequestParam(value = "labelMode", defaultValue = "diff") String labelMode,
+        @RequestParam(value = "labelSubjects", required = false) String labelSubjects,
+        HttpSession session, ServletWebRequest request,
+        @RequestHeader(value = "X-Session-ID", required = false) String sessionId
+    ) {
+        SessionSnapshot snapshot = snapshot(session, sessionId);
+        if (notModified(request, snapshot)) return null;
+        boolean defaultLabels = DEFAULT_LABEL_MODE.equals(labelMode) && labelSubjects == null;
+        return ndjson(snapshot, "subgroup", classNames(snapshot.data()), defaultLabels,
+                name -> timetableForSubgroup(name, labelMode, labelSubjects, snapshot));
+    }
+
+    /**
+     * Emplois du temps de toutes les salles en NDJSON, dans l'ordre de /rooms/list
+     */
+    @GetMapping("/timetable/rooms/all")
+    public ResponseEntity<StreamingResponseBody> allRoomTimetables(HttpSession session, ServletWebRequest request,
+                                                                   @RequestHeader(value = "X-Session-ID", required = false) String sessionId) {
+        SessionSnapshot snapshot = snapshot(session, sessionId);
+        if (notModified(request, snapshot)) return null;
+        return ndjson(snapshot, "room", roomDisplayNames(snapshot), true, name -> timetableForRoom(name, snapshot));
+    }
+
+    /**
+     * Réponse NDJSON envoyée au fil du calcul : les lignes sont calculées en parallèle sur le pool
+     * json-export (vues pré-calculées si {@code useViews}, sinon calcul direct) et écrites dans l'ordre
+     * de {@code names}. Seule la fenêtre de calcul du pool est en mémoire, quel que soit le nombre
+     * d'emplois du temps.
+     */
+    private ResponseEntity<StreamingResponseBody> ndjson(SessionSnapshot snapshot, String type, List<String> names,
+                                                         boolean useViews, Function<String, List<SlotDto>> compute) {
+        StreamingResponseBody body = out -> {
+            long start = System.nanoTime();
+            List<String> failed = new ArrayList<>();
+            int[] lines = {0};
+            jsonBatchExporter.exportInOrder(names, name -> ndjsonLine(snapshot, type, name, useViews, compute), (name, line) -> {
+                if (line == null) {
+                    // Calcul en échec : ligne d'erreur pour que le client sache quel emploi du temps manque
+                    failed.add(name);
+                    line = ndjsonLine(name, "error", objectMapper.writeValueAsBytes("calcul impossible"));
+                }
+                out.write(line);
+                if (++lines[0] % 16 == 0) out.flush();
+            });
+            out.flush();
+            System.out.println("📤 Export NDJSON " + type + ": " + (lines[0] - failed.size()) + "/" + names.size()
+                    + " emplois du temps (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            if (!failed.isEmpty()) System.err.println("⚠ Emplois du temps non calculés: " + failed);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private byte[] ndjsonLine(SessionSnapshot snapshot, String type, String name,
+                              boolean useViews, Function<String, List<SlotDto>> compute) {
+        try {
+            byte[] gzip = useViews ? materializedViews.get(snapshot.version(), viewName(type, name)) : null;
+            byte[] timetable = gzip != null ? MaterializedViews.gunzip(gzip) : objectMapper.writeValueAsBytes(compute.apply(name));
+            return ndjsonLine(name, "timetable", timetable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] ndjsonLine(String name, String field, byte[] json) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(json.length + 3 * name.length() + 32);
+        line.write("{\"name\":".getBytes(StandardCharsets.UTF_8));
+        line.write(objectMapper.writeValueAsBytes(name));
+        line.write((",\"" + field + "\":").getBytes(StandardCharsets.UTF_8));
+        line.write(json);
+        line.write("}\n".getBytes(StandardCharsets.UTF_8));
+        return line.toByteArray();
+    }
+
     // ==================== ENDPOINTS DE RENOMMAGE ====================
     
     /**
@@ -1227,12 +1196,14 @@ public class TimetableController {
      */
     @GetMapping("/rename/teachers/list")
     public ResponseEntity<?> listTeachersForRename(HttpSession session) {
-        UserData userData = getUserData(session);
+        SessionSnapshot snapshot = getUserData(session).snapshot();
         List<Map<String, String>> result = new ArrayList<>();
-        for (String original : userData.teachers.keySet()) {
+        TimetableData data = snapshot.data();
+        for (int t = 0; t < data.teacherCount(); t++) {
+            String original = data.teacherName(t);
             Map<String, String> item = new HashMap<>();
             item.put("original", original);
-            item.put("renamed", userData.teacherMappings.getOrDefault(original, ""));
+            item.put("renamed", snapshot.teacherMappings().getOrDefault(original, ""));
             result.add(item);
         }
         result.sort((a, b) -> a.get("original").compareToIgnoreCase(b.get("original")));
@@ -1244,35 +1215,15 @@ public class TimetableController {
      */
     @GetMapping("/rename/rooms/list")
     public ResponseEntity<?> listRoomsForRename(HttpSession session) {
-        UserData userData = getUserData(session);
-        Set<String> allRooms = new TreeSet<>();
-        // Collecter toutes les salles
-        for (var sgSchedule : userData.subgroups.values()) {
-            for (var dayEntry : sgSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRooms.add(room);
-                }
-            }
-        }
-        for (var tSchedule : userData.teachers.values()) {
-            for (var dayEntry : tSchedule.entrySet()) {
-                for (var hourEntry : dayEntry.getValue().entrySet()) {
-                    String room = hourEntry.getValue().getOrDefault("room", "").trim();
-                    if (!room.isEmpty()) allRooms.add(room);
-                }
-            }
-        }
-        for (var a : userData.activities) {
-            String room = (a.room == null ? "" : a.room.trim());
-            if (!room.isEmpty()) allRooms.add(room);
-        }
+        SessionSnapshot snapshot = getUserData(session).snapshot();
+        TimetableData data = snapshot.data();
         
         List<Map<String, String>> result = new ArrayList<>();
-        for (String original : allRooms) {
+        for (int r = 0; r < data.roomCount(); r++) {
+            String original = data.roomName(r);
             Map<String, String> item = new HashMap<>();
             item.put("original", original);
-            item.put("renamed", userData.roomMappings.getOrDefault(original, ""));
+            item.put("renamed", snapshot.roomMappings().getOrDefault(original, ""));
             result.add(item);
         }
         return ResponseEntity.ok(result);
@@ -1283,7 +1234,6 @@ public class TimetableController {
      */
     @PostMapping("/rename/teacher")
     public ResponseEntity<?> renameTeacher(@RequestBody Map<String, String> request, HttpSession session) {
-        UserData userData = getUserData(session);
         String sessionId = session.getId();
         try {
             String original = request.get("original");
@@ -1293,15 +1243,14 @@ public class TimetableController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Le nom original est requis"));
             }
             
-            if (renamed == null || renamed.trim().isEmpty()) {
-                // Supprimer le mapping
-                userData.teacherMappings.remove(original);
-            } else {
-                // Ajouter/modifier le mapping
-                userData.teacherMappings.put(original, renamed);
-            }
-            
-            saveMappings(sessionId, userData);
+            // Ajouter/modifier le mapping (un nom vide le supprime), publié en une seule fois et sauvegardé
+            // sans que la session puisse être retirée de la mémoire entre les deux
+            SessionSnapshot snapshot = sessionStore.modify(sessionId, userData -> {
+                SessionSnapshot published = userData.update(current -> current.withTeacherMapping(original, renamed));
+                saveMappings(sessionId, userData);
+                return published;
+            });
+            materializeViews(snapshot);
             return ResponseEntity.ok(Map.of("status", "ok", "message", "Renommage enregistré"));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
@@ -1313,7 +1262,6 @@ public class TimetableController {
      */
     @PostMapping("/rename/room")
     public ResponseEntity<?> renameRoom(@RequestBody Map<String, String> request, HttpSession session) {
-        UserData userData = getUserData(session);
         String sessionId = session.getId();
         try {
             String original = request.get("original");
@@ -1323,15 +1271,14 @@ public class TimetableController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Le nom original est requis"));
             }
             
-            if (renamed == null || renamed.trim().isEmpty()) {
-                // Supprimer le mapping
-                userData.roomMappings.remove(original);
-            } else {
-                // Ajouter/modifier le mapping
-                userData.roomMappings.put(original, renamed);
-            }
-            
-            saveMappings(sessionId, userData);
+            // Ajouter/modifier le mapping (un nom vide le supprime), publié en une seule fois et sauvegardé
+            // sans que la session puisse être retirée de la mémoire entre les deux
+            SessionSnapshot snapshot = sessionStore.modify(sessionId, userData -> {
+                SessionSnapshot published = userData.update(current -> current.withRoomMapping(original, renamed));
+                saveMappings(sessionId, userData);
+                return published;
+            });
+            materializeViews(snapshot);
             return ResponseEntity.ok(Map.of("status", "ok", "message", "Renommage enregistré"));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
@@ -1343,36 +1290,51 @@ public class TimetableController {
      */
     @GetMapping("/rename/mappings")
     public ResponseEntity<?> getMappings(HttpSession session) {
-        UserData userData = getUserData(session);
+        SessionSnapshot snapshot = getUserData(session).snapshot();
         Map<String, Object> result = new HashMap<>();
-        result.put("teachers", userData.teacherMappings);
-        result.put("rooms", userData.roomMappings);
+        result.put("teachers", snapshot.teacherMappings());
+        result.put("rooms", snapshot.roomMappings());
         return ResponseEntity.ok(result);
     }
 
-    private Map<String,Object> slotEntry(String day, String period, String hourId, String timeslot,
-                                         String subject, String teacher, String subgroup, String room, UserData userData) {
-        Map<String,Object> m = new HashMap<>();
-        m.put("day", day);
-        m.put("period", period);
-        m.put("hourId", hourId);
-        m.put("timeslot", timeslot);
-        m.put("subject", subject);
-        m.put("teacher", applyTeacherMapping(teacher, userData));  // Appliquer le renommage
-        m.put("subgroup", subgroup);
-        m.put("room", applyRoomMapping(room, userData));  // Appliquer le renommage
-        return m;
+    /**
+     * Créneau {@code slot} des données : libellés, plage horaire et clé de tri tirés de la grille horaire
+     * (un créneau hors grille garde son heure brute comme plage horaire)
+     */
+    private SlotDto slotEntry(TimetableData data, int slot,
+                              String subject, String teacher, String subgroup, String room, SessionSnapshot snapshot) {
+        boolean morning = data.isMorning(slot);
+        int ordinal = data.slotOrdinal(slotCodec, slot);
+        String hour = data.hour(slot);
+        return slotEntry(dayName(data, slot), morning ? "matin" : "soir", hour,
+                ordinal != SlotCodec.NONE ? slotCodec.timeslot(ordinal) : hour,
+                subject, teacher, subgroup, room, ordinal, ordinal, slotCodec.sortKey(ordinal, data.slotDay(slot), morning), snapshot);
     }
-    
-    private Integer getDayOrder(String day) {
-        return switch (day) {
-            case "Lundi" -> 1;
-            case "Mardi" -> 2;
-            case "Mercredi" -> 3;
-            case "Jeudi" -> 4;
-            case "Vendredi" -> 5;
-            case "Samedi" -> 6;
-            default -> 7;
-        };
+
+    /**
+     * Fusion de deux créneaux consécutifs (voir {@link SlotCodec#consecutive(int, int)}) : de la première heure
+     * de {@code first} à la dernière heure de {@code next}
+     */
+    private SlotDto mergedEntry(SlotDto first, SlotDto next, SessionSnapshot snapshot) {
+        return slotEntry(first.day(), first.period(),
+                slotCodec.hourId(first.first(), next.last()), slotCodec.timeslot(first.first(), next.last()),
+                first.subject(), first.teacher(), first.subgroup(), first.room(),
+                first.first(), next.last(), first.order(), snapshot);
+    }
+
+    private SlotDto slotEntry(String day, String period, String hourId, String timeslot,
+                              String subject, String teacher, String subgroup, String room,
+                              int first, int last, int order, SessionSnapshot snapshot) {
+        return new SlotDto(day, period, hourId, timeslot, subject,
+                applyTeacherMapping(teacher, snapshot),  // Appliquer le renommage
+                subgroup,
+                applyRoomMapping(room, snapshot),  // Appliquer le renommage
+                first, last, order);
+    }
+
+    /** Libellé du jour d'un créneau ("Lundi"...), ou le nom brut pour un jour inconnu */
+    private static String dayName(TimetableData data, int slot) {
+        int day = data.slotDay(slot);
+        return day != TimetableData.NONE ? SlotCodec.DAYS.get(day) : data.dayRaw(slot);
     }
 }
@@ -1,4 +1,18 @@
 package com.example.timetable.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Comparator;
+
+/**
+ * Créneau d'un emploi du temps (réponses JSON, PDF). L'ordre des champs JSON est celui des anciennes
+ * réponses construites avec une HashMap : chaque créneau est sérialisé comme avant.
+ * {@code first}/{@code last} (ordinaux {@code SlotCodec} de la première et de la dernière heure, égaux
+ * hors fusion) et {@code order} (clé de tri {@code SlotCodec.sortKey}) servent aux fusions et aux tris
+ * et ne sont pas sérialisés.
+ */
+@JsonPropertyOrder({"period", "teacher", "subgroup", "hourId", "subject", "timeslot", "day", "room"})
 public record SlotDto(
     String day,
     String period,
@@ -7,5 +21,18 @@ public record SlotDto(
     String subject,
     String teacher,
     String subgroup,
-    String room
-) {}
+    String room,
+    @JsonIgnore int first,
+    @JsonIgnore int last,
+    @JsonIgnore int order
+) {
+
+    /**
+     * Tri chronologique : jour, matin avant soir, puis heure. Le tri est stable : à créneau égal, les
+     * entrées gardent leur ordre d'ajout (sous-groupes d'une classe dans l'ordre du fichier FET, G1 avant
+     * G2 ; classes d'une salle dans l'ordre de l'index des salles). Les réponses d'origine suivaient
+     * l'ordre d'itération d'une HashMap, sans ordre défini entre sous-groupes d'un même créneau.
+     */
+    public static final Comparator<SlotDto> CHRONOLOGICAL =
+        Comparator.comparingInt(SlotDto::order).thenComparing(SlotDto::hourId);
+}
@@ -0,0 +1,146 @@
+package com.example.timetable.model;
+
+import java.util.*;
+
+/**
+ * Jointure des trois fichiers FET sur l'identifiant d'activité : pour chaque activité,
+ * ses professeurs, ses sous-groupes, sa salle et ses créneaux.
+ *
+ * Construit une seule fois avec le modèle. Une activité de plusieurs heures occupe plusieurs
+ * créneaux consécutifs ; ses sous-groupes sont triés par nom, ses créneaux par numéro.
+ */
+public final class ActivityIndex {
+
+    private final String[] ids;                  // activité -> identifiant FET (ex: "412")
+    private final Map<String, Integer> byId;
+    private final int[] activityOfString;        // id de chaîne -> activité, ou NONE
+    private final List<List<Integer>> teachers;
+    private final List<List<Integer>> subgroups;
+    private final List<List<Integer>> slots;
+    private final String[] rooms;
+
+    ActivityIndex(TimetableData data, int stringCount) {
+        this.activityOfString = new int[stringCount];
+        Arrays.fill(activityOfString, TimetableData.NONE);
+        List<String> idList = new ArrayList<>();
+        List<Set<Integer>> teacherSets = new ArrayList<>();
+        List<Set<Integer>> subgroupSets = new ArrayList<>();
+        List<Set<Integer>> slotSets = new ArrayList<>();
+        List<String> roomList = new ArrayList<>();
+
+        // Hash-join : chaque identifiant est résolu une seule fois, les trois fichiers alimentent la même entrée
+        for (int a = 0; a < data.activityCount(); a++) {
+            int act = join(data.activityIdString(a), data, idList, teacherSets, subgroupSets, slotSets, roomList);
+            if (act == TimetableData.NONE) continue;
+            slotSets.get(act).add(data.activitySlot(a));
+            setRoom(roomList, act, data.activityRoom(a));
+        }
+        for (int t = 0; t < data.teacherCount(); t++) {
+            for (int s = 0; s < data.slotCount(); s++) {
+                int act = join(data.teacherActivityString(t, s), data, idList, teacherSets, subgroupSets, slotSets, roomList);
+                if (act == TimetableData.NONE) continue;
+                teacherSets.get(act).add(t);
+                slotSets.get(act).add(s);
+                setRoom(roomList, act, data.teacherRoom(t, s));
+            }
+        }
+        for (int g = 0; g < data.subgroupCount(); g++) {
+            for (int s = 0; s < data.slotCount(); s++) {
+                int act = join(data.subgroupActivityString(g, s), data, idList, teacherSets, subgroupSets, slotSets, roomList);
+                if (act == TimetableData.NONE) continue;
+                subgroupSets.get(act).add(g);
+                slotSets.get(act).add(s);
+                setRoom(roomList, act, data.subgroupRoom(g, s));
+            }
+        }
+
+        this.ids = idList.toArray(new String[0]);
+        Map<String, Integer> index = new HashMap<>();
+        for (int a = 0; a < ids.length; a++) index.put(ids[a], a);
+        this.byId = Map.copyOf(index);
+        this.teachers = freeze(teacherSets, null);
+        this.subgroups = freeze(subgroupSets, Comparator.comparing(data::subgroupName));
+        this.slots = freeze(slotSets, null);
+        this.rooms = roomList.toArray(new String[0]);
+    }
+
+    private int join(int stringId, TimetableData data, List<String> idList, List<Set<Integer>> teacherSets,
+                     List<Set<Integer>> subgroupSets, List<Set<Integer>> slotSets, List<String> roomList) {
+        // Cellule sans identifiant (export FET ancien ou heure vide)
+        if (stringId == TimetableData.NONE || data.string(stringId).isBlank()) return TimetableData.NONE;
+        if (activityOfString[stringId] == TimetableData.NONE) {
+            activityOfString[stringId] = idList.size();
+            idList.add(data.string(stringId).trim());
+            teacherSets.add(new TreeSet<>());
+            subgroupSets.add(new TreeSet<>());
+            slotSets.add(new TreeSet<>());
+            roomList.add("");
+        }
+        return activityOfString[stringId];
+    }
+
+    /** La première salle non vide rencontrée l'emporte (activities.xml est lu en premier). */
+    private static void setRoom(List<String> roomList, int activity, String room) {
+        String r = room == null ? "" : room.trim();
+        if (roomList.get(activity).isEmpty() && !r.isEmpty()) roomList.set(activity, r);
+    }
+
+    private static List<List<Integer>> freeze(List<Set<Integer>> sets, Comparator<Integer> order) {
+        List<List<Integer>> out = new ArrayList<>(sets.size());
+        for (Set<Integer> set : sets) {
+            List<Integer> l = new ArrayList<>(set);
+            if (order != null) l.sort(order);
+            out.add(List.copyOf(l));
+        }
+        return List.copyOf(out);
+    }
+
+    /** Activité correspondant à un id de chaîne du dictionnaire, ou {@link TimetableData#NONE}. */
+    int ofString(int stringId) {
+        return stringId == TimetableData.NONE ? TimetableData.NONE : activityOfString[stringId];
+    }
+
+    public int count() {
+        return ids.length;
+    }
+
+    /** Activité portant cet identifiant FET, ou {@link TimetableData#NONE}. */
+    public int find(String activityId) {
+        Integer a = activityId == null ? null : byId.get(activityId.trim());
+        return a == null ? TimetableData.NONE : a;
+    }
+
+    /** Identifiant FET de l'activité. */
+    public String id(int activity) {
+        return ids[activity];
+    }
+
+    /** Professeurs de l'activité (index de professeur). */
+    public List<Integer> teachers(int activity) {
+        return teachers.get(activity);
+    }
+
+    /** Sous-groupes qui suivent l'activité, triés par nom. */
+    public List<Integer> subgroups(int activity) {
+        return subgroups.get(activity);
+    }
+
+    /** Créneaux occupés par l'activité, dans l'ordre des numéros de créneau. */
+    public List<Integer> slots(int activity) {
+        return slots.get(activity);
+    }
+
+    /** Salle de l'activité (nettoyée), "" si aucune. */
+    public String room(int activity) {
+        return rooms[activity];
+    }
+
+    long estimatedBytes() {
+        long bytes = 4L * activityOfString.length + 48L * byId.size() + 8L * rooms.length;
+        for (int a = 0; a < ids.length; a++) {
+            bytes += 40 + 2L * ids[a].length()
+                    + 16L * (teachers.get(a).size() + subgroups.get(a).size() + slots.get(a).size()) + 3 * 24L;
+        }
+        return bytes;
+    }
+}
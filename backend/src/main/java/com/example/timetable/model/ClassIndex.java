@@ -0,0 +1,95 @@
+package com.example.timetable.model;
+
+import java.util.*;
+
+/**
+ * Index des classes : nom de classe nettoyé -> sous-groupes, et préfixe brut ("3APIC-5")
+ * -> sous-groupes ("3APIC-5:G1", "3APIC-5:G2"). Les sous-groupes automatiques sont marqués.
+ *
+ * Construit une seule fois avec le modèle ; toutes les listes sont triées par nom de sous-groupe.
+ */
+public final class ClassIndex {
+
+    private final TimetableData data;
+    private final List<String> classNames;
+    private final Map<String, List<Integer>> byClass;
+    private final Map<String, List<Integer>> regularByClass;
+    private final Map<String, List<Integer>> byBase;
+    private final boolean[] auto;
+
+    ClassIndex(TimetableData data) {
+        this.data = data;
+        int count = data.subgroupCount();
+        Integer[] sorted = new Integer[count];
+        for (int g = 0; g < count; g++) sorted[g] = g;
+        Arrays.sort(sorted, Comparator.comparing(data::subgroupName));
+
+        this.auto = new boolean[count];
+        Map<String, List<Integer>> classes = new HashMap<>();
+        Map<String, List<Integer>> regular = new HashMap<>();
+        Map<String, List<Integer>> bases = new HashMap<>();
+        for (int g : sorted) {
+            String name = data.subgroupName(g);
+            auto[g] = ClassNames.isAutoSubgroup(name);
+            classes.computeIfAbsent(data.subgroupClass(g), k -> new ArrayList<>()).add(g);
+            if (!auto[g]) regular.computeIfAbsent(data.subgroupClass(g), k -> new ArrayList<>()).add(g);
+            bases.computeIfAbsent(ClassNames.extractClassBase(name), k -> new ArrayList<>()).add(g);
+        }
+        this.byClass = freeze(classes);
+        this.regularByClass = freeze(regular);
+        this.byBase = freeze(bases);
+        this.classNames = byClass.keySet().stream().filter(c -> !c.isBlank()).sorted().toList();
+    }
+
+    private static Map<String, List<Integer>> freeze(Map<String, List<Integer>> m) {
+        Map<String, List<Integer>> out = new HashMap<>();
+        m.forEach((k, v) -> out.put(k, List.copyOf(v)));
+        return Map.copyOf(out);
+    }
+
+    /** Noms de classes nettoyés (non vides), triés. */
+    public List<String> classNames() {
+        return classNames;
+    }
+
+    /** Tous les sous-groupes de la classe (nom nettoyé), automatiques compris. */
+    public List<Integer> subgroups(String cleanedClass) {
+        return byClass.getOrDefault(cleanedClass, List.of());
+    }
+
+    /** Sous-groupes de la classe (nom nettoyé), hors sous-groupes automatiques. */
+    public List<Integer> regularSubgroups(String cleanedClass) {
+        return regularByClass.getOrDefault(cleanedClass, List.of());
+    }
+
+    public boolean isAuto(int subgroup) {
+        return auto[subgroup];
+    }
+
+    /**
+     * Sous-groupes égaux à {@code studentsBase} ou commençant par {@code studentsBase + ":"}
+     * (ex: "3APIC-5" -> "3APIC-5:G1", "3APIC-5:G2").
+     */
+    public List<Integer> candidates(String studentsBase) {
+        if (studentsBase == null || studentsBase.isEmpty()) return List.of();
+        // Tous les candidats partagent le préfixe brut de studentsBase, sauf un nom commençant par ':'
+        Collection<Integer> bucket = studentsBase.indexOf(':') == 0
+                ? allSubgroups()
+                : byBase.getOrDefault(ClassNames.extractClassBase(studentsBase), List.of());
+        List<Integer> out = new ArrayList<>(bucket.size());
+        for (int g : bucket) {
+            if (ClassNames.belongsTo(data.subgroupName(g), studentsBase)) out.add(g);
+        }
+        return out;
+    }
+
+    private Collection<Integer> allSubgroups() {
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> l : byBase.values()) all.addAll(l);
+        return all;
+    }
+
+    long estimatedBytes() {
+        return 64L * (byClass.size() + regularByClass.size() + byBase.size()) + 16L * auto.length * 3 + auto.length;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.timetable.model;
+
+/**
+ * Règles de nommage des classes et sous-groupes FET (ex: "3APIC-5:G1").
+ */
+public final class ClassNames {
+
+    // Marqueurs ajoutés par FET aux sous-groupes générés automatiquement
+    private static final String[] AUTO_TOKENS = {
+            "مجموعات فرعية تلقائية",
+            "مجموعة فرعية تلقائية",
+            "sous-groupes automatiques",
+            "sous groupe automatique",
+            "automatic subgroups",
+            "automatic subgroup",
+            "auto subgroups",
+            "auto subgroup"
+    };
+
+    private ClassNames() {}
+
+    /** Partie après ':' (ex: "G1"), ou null s'il n'y en a pas. */
+    public static String extractGroupPart(String subgroupId) {
+        if (subgroupId == null) return null;
+        int idx = subgroupId.indexOf(':');
+        if (idx >= 0 && idx + 1 < subgroupId.length()) return subgroupId.substring(idx + 1);
+        return null;
+    }
+
+    /**
+     * Heuristic to detect automatically-created subgroup identifiers.
+     * We treat subgroup IDs as automatic when the part after ':' is empty
+     * or contains the word "auto" (case-insensitive) or obvious markers like "(auto)".
+     */
+    public static boolean isAutoSubgroup(String subgroupId) {
+        if (subgroupId == null) return false;
+        int idx = subgroupId.indexOf(':');
+        if (idx < 0) return false; // no subgroup suffix -> it's a class identifier, not an auto subgroup
+        String part = subgroupId.substring(idx + 1).trim();
+        if (part.isEmpty()) return true;
+        String low = part.toLowerCase();
+        if (low.contains("auto") || low.contains("(auto)")) return true;
+        // other heuristics: sometimes autogenerated labels include "-" with digits only like "-1" or similar;
+        // we avoid marking common valid labels like G1/G2 as automatic.
+        return false;
+    }
+
+    // Extract the class part before any subgroup suffix like ":G1"
+    public static String extractClassBase(String subgroupKey){
+        if (subgroupKey == null) return "";
+        int idx = subgroupKey.indexOf(':');
+        return idx > 0 ? subgroupKey.substring(0, idx) : subgroupKey;
+    }
+
+    // True if the subgroup is the students set itself or one of its subgroups ("3APIC-5" -> "3APIC-5:G1")
+    public static boolean belongsTo(String subgroupId, String studentsBase){
+        return subgroupId.equals(studentsBase) || subgroupId.startsWith(studentsBase + ":");
+    }
+
+    // Remove placeholder phrases like "مجموعات فرعية تلقائية" from class names
+    public static String sanitizeClassName(String name){
+        if (name == null) return "";
+        String n = name;
+        for (String t : AUTO_TOKENS){
+            n = n.replace(t, "");
+        }
+        // collapse extra whitespace and trim
+        n = n.replaceAll("\\s{2,}", " ").trim();
+        return n;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.timetable.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Identité d'un jeu de données : empreintes SHA-256 (hexadécimal) des trois exports FET,
+ * "" pour un fichier jamais envoyé. Deux sessions ayant envoyé les mêmes fichiers ont la même clé
+ * et partagent le même modèle parsé.
+ *
+ * L'identifiant ({@link #id()}) est calculé une seule fois, à la création de la clé : il sert de clé
+ * aux caches et aux ETag de chaque requête.
+ */
+public final class DatasetKey {
+
+    public static final DatasetKey EMPTY = new DatasetKey("", "", "");
+
+    private final String teachers;
+    private final String subgroups;
+    private final String activities;
+    private final String id;
+
+    public DatasetKey(String teachers, String subgroups, String activities) {
+        this.teachers = teachers == null ? "" : teachers;
+        this.subgroups = subgroups == null ? "" : subgroups;
+        this.activities = activities == null ? "" : activities;
+        this.id = digest(this.teachers, this.subgroups, this.activities);
+    }
+
+    public String teachers() { return teachers; }
+
+    public String subgroups() { return subgroups; }
+
+    public String activities() { return activities; }
+
+    public boolean isEmpty() {
+        return teachers.isEmpty() && subgroups.isEmpty() && activities.isEmpty();
+    }
+
+    /** Remplace les parties envoyées (non null), garde les autres (upload partiel). */
+    public DatasetKey merge(String teachers, String subgroups, String activities) {
+        return new DatasetKey(teachers != null ? teachers : this.teachers,
+                subgroups != null ? subgroups : this.subgroups,
+                activities != null ? activities : this.activities);
+    }
+
+    /** Identifiant du jeu de données (utilisable comme nom de fichier). */
+    public String id() {
+        return id;
+    }
+
+    private static String digest(String teachers, String subgroups, String activities) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((teachers + "|" + subgroups + "|" + activities).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof DatasetKey other && id.equals(other.id));
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DatasetKey[teachers=" + teachers + ", subgroups=" + subgroups + ", activities=" + activities + "]";
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.timetable.model;
+
+import java.util.Arrays;
+
+/**
+ * Liste extensible d'entiers primitifs (évite le boxing des List&lt;Integer&gt; pendant la construction).
+ */
+final class IntBuffer {
+    private int[] values;
+    private int size;
+
+    IntBuffer() {
+        this(16);
+    }
+
+    IntBuffer(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int value) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void set(int index, int value) {
+        values[index] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
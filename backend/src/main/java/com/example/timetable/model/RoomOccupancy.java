@@ -0,0 +1,52 @@
+package com.example.timetable.model;
+
+import java.util.BitSet;
+
+/**
+ * Index d'occupation des salles : un bitset par créneau, un bit par salle
+ * (index de salle de {@link TimetableData#roomName(int)}).
+ *
+ * Construit une seule fois avec le modèle ; les salles libres d'un créneau
+ * s'obtiennent par simple complément du bitset.
+ */
+public final class RoomOccupancy {
+
+    private final BitSet[] occupied;
+    private final int roomCount;
+
+    RoomOccupancy(int slotCount, int roomCount) {
+        this.occupied = new BitSet[slotCount];
+        this.roomCount = roomCount;
+        for (int s = 0; s < slotCount; s++) occupied[s] = new BitSet(roomCount);
+    }
+
+    void mark(int slot, int room) {
+        occupied[slot].set(room);
+    }
+
+    /** Vrai si au moins une salle est occupée à ce créneau. */
+    public boolean isUsed(int slot) {
+        return !occupied[slot].isEmpty();
+    }
+
+    public int occupiedCount(int slot) {
+        return occupied[slot].cardinality();
+    }
+
+    /** Salles occupées à ce créneau (copie). */
+    public BitSet occupiedRooms(int slot) {
+        return (BitSet) occupied[slot].clone();
+    }
+
+    /** Salles libres à ce créneau (complément des salles occupées). */
+    public BitSet vacantRooms(int slot) {
+        BitSet vacant = new BitSet(roomCount);
+        vacant.set(0, roomCount);
+        vacant.andNot(occupied[slot]);
+        return vacant;
+    }
+
+    long estimatedBytes() {
+        return occupied.length * (32L + ((roomCount + 63) / 64) * 8L);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.timetable.model;
+
+import java.util.*;
+
+/**
+ * Créneaux occupés d'une salle, d'après subgroups.xml : (créneau, matière, professeur, classe).
+ *
+ * L'index inversé salle -> créneaux est construit une seule fois avec le modèle ; les entrées
+ * sont déjà dédupliquées par classe (les sous-groupes G1/G2 d'une même classe ne comptent qu'une fois)
+ * et rangées dans l'ordre des créneaux puis des sous-groupes.
+ */
+public final class RoomSchedule {
+
+    static final RoomSchedule EMPTY = new RoomSchedule(new int[0], new String[0], new String[0], new String[0], new String[0]);
+
+    private final int[] slots;
+    private final String[] subjects;
+    private final String[] teachers;
+    private final String[] classes;
+    private final String[] rooms;
+
+    private RoomSchedule(int[] slots, String[] subjects, String[] teachers, String[] classes, String[] rooms) {
+        this.slots = slots;
+        this.subjects = subjects;
+        this.teachers = teachers;
+        this.classes = classes;
+        this.rooms = rooms;
+    }
+
+    public int size() { return slots.length; }
+
+    public int slot(int i) { return slots[i]; }
+
+    public String subject(int i) { return subjects[i]; }
+
+    public String teacher(int i) { return teachers[i]; }
+
+    /** Nom de classe nettoyé (sans suffixe de sous-groupe ni marqueur automatique). */
+    public String className(int i) { return classes[i]; }
+
+    /** Nom de la salle tel qu'écrit dans le fichier (nettoyé des espaces). */
+    public String room(int i) { return rooms[i]; }
+
+    /** Clé de recherche d'une salle : la comparaison des noms ignore la casse. */
+    static String key(String room) {
+        return room.trim().toLowerCase(Locale.ROOT);
+    }
+
+    long estimatedBytes() {
+        return 48L + slots.length * (4L + 4 * 4);
+    }
+
+    /**
+     * Construit l'index salle -> créneaux à partir des sous-groupes du modèle.
+     */
+    static Map<String, RoomSchedule> index(TimetableData data) {
+        Map<String, Acc> byRoom = new HashMap<>();
+        for (int slot = 0; slot < data.slotCount(); slot++) {
+            for (int g = 0; g < data.subgroupCount(); g++) {
+                if (!data.hasSubgroupSlot(g, slot)) continue;
+                // Ignorer les classes vides après nettoyage (qui ne contenaient que des marqueurs)
+                String cleanedClass = data.subgroupClass(g);
+                if (cleanedClass.isEmpty()) continue;
+                String room = data.subgroupRoom(g, slot).trim();
+                if (room.isEmpty()) continue;
+                byRoom.computeIfAbsent(key(room), k -> new Acc())
+                        .add(slot, data.subgroupSubject(g, slot), data.subgroupTeacher(g, slot), cleanedClass, room);
+            }
+        }
+        Map<String, RoomSchedule> out = new HashMap<>();
+        byRoom.forEach((k, acc) -> out.put(k, acc.build()));
+        return Map.copyOf(out);
+    }
+
+    private static final class Acc {
+        private final Set<List<Object>> seen = new HashSet<>();
+        private final IntBuffer slots = new IntBuffer();
+        private final List<String> subjects = new ArrayList<>();
+        private final List<String> teachers = new ArrayList<>();
+        private final List<String> classes = new ArrayList<>();
+        private final List<String> rooms = new ArrayList<>();
+
+        void add(int slot, String subject, String teacher, String cleanedClass, String room) {
+            // Déduplication : même créneau, même matière, même professeur, même classe
+            if (!seen.add(List.of(slot, subject, teacher, cleanedClass))) return;
+            slots.add(slot);
+            subjects.add(subject);
+            teachers.add(teacher);
+            classes.add(cleanedClass);
+            rooms.add(room);
+        }
+
+        RoomSchedule build() {
+            return new RoomSchedule(slots.toArray(), subjects.toArray(new String[0]), teachers.toArray(new String[0]),
+                    classes.toArray(new String[0]), rooms.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.timetable.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Version immuable des données d'une session : emploi du temps et renommages.
+ * Le modèle est partagé (en lecture seule) par toutes les sessions ayant envoyé les mêmes fichiers ;
+ * seuls les renommages sont propres à la session.
+ *
+ * Une session publie une nouvelle version à chaque upload ou renommage ; un lecteur prend une
+ * version au début de la requête et la garde jusqu'au bout, sans verrou ni état à moitié chargé.
+ */
+public final class SessionSnapshot {
+
+    public static final SessionSnapshot EMPTY = new SessionSnapshot(DatasetKey.EMPTY, TimetableData.EMPTY, Map.of(), Map.of(), null);
+
+    private final DatasetKey datasetKey;
+    private final TimetableData data;
+    private final Map<String, String> teacherMappings;
+    private final Map<String, String> roomMappings;
+    private final String mappingsVersion;
+
+    private SessionSnapshot(DatasetKey datasetKey, TimetableData data,
+                            Map<String, String> teacherMappings, Map<String, String> roomMappings, String mappingsVersion) {
+        this.datasetKey = datasetKey;
+        this.data = data;
+        this.teacherMappings = teacherMappings;
+        this.roomMappings = roomMappings;
+        this.mappingsVersion = mappingsVersion != null ? mappingsVersion : digest(teacherMappings, roomMappings);
+    }
+
+    /** Empreintes des fichiers dont le modèle est issu. */
+    public DatasetKey datasetKey() { return datasetKey; }
+
+    public TimetableData data() { return data; }
+
+    /** Renommages des professeurs (nom original -> nom affiché), non modifiable. */
+    public Map<String, String> teacherMappings() { return teacherMappings; }
+
+    /** Renommages des salles (nom original -> nom affiché), non modifiable. */
+    public Map<String, String> roomMappings() { return roomMappings; }
+
+    /**
+     * Version des renommages : empreinte de leur contenu (mêmes renommages, même version, y compris
+     * après rechargement de la session ou dans une autre session).
+     */
+    public String mappingsVersion() { return mappingsVersion; }
+
+    /**
+     * Version des données publiées : change à chaque upload (nouveaux fichiers) ou renommage, et
+     * uniquement dans ce cas. Dérivée du contenu comme {@link #mappingsVersion()} : deux sessions
+     * avec les mêmes fichiers et renommages ont la même version, et elle survit au rechargement.
+     */
+    public String version() {
+        return datasetKey.id() + "/" + mappingsVersion;
+    }
+
+    public boolean hasData() {
+        return !data.isEmpty();
+    }
+
+    public SessionSnapshot withDataset(DatasetKey datasetKey, TimetableData data) {
+        return new SessionSnapshot(datasetKey, data, teacherMappings, roomMappings, mappingsVersion);
+    }
+
+    public SessionSnapshot withMappings(Map<String, String> teacherMappings, Map<String, String> roomMappings) {
+        return new SessionSnapshot(datasetKey, data, freeze(teacherMappings), freeze(roomMappings), null);
+    }
+
+    /** Ajoute ou remplace le renommage d'un professeur ; un nom vide supprime le renommage. */
+    public SessionSnapshot withTeacherMapping(String original, String renamed) {
+        return new SessionSnapshot(datasetKey, data, put(teacherMappings, original, renamed), roomMappings, null);
+    }
+
+    /** Ajoute ou remplace le renommage d'une salle ; un nom vide supprime le renommage. */
+    public SessionSnapshot withRoomMapping(String original, String renamed) {
+        return new SessionSnapshot(datasetKey, data, teacherMappings, put(roomMappings, original, renamed), null);
+    }
+
+    private static Map<String, String> put(Map<String, String> mappings, String original, String renamed) {
+        Map<String, String> copy = new HashMap<>(mappings);
+        if (renamed == null || renamed.trim().isEmpty()) {
+            copy.remove(original);
+        } else {
+            copy.put(original, renamed);
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static String digest(Map<String, String> teacherMappings, Map<String, String> roomMappings) {
+        if (teacherMappings.isEmpty() && roomMappings.isEmpty()) return "";
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Entrées triées, séparées par des caractères de contrôle (absents des noms) : pas d'ambiguïté
+            StringBuilder content = new StringBuilder();
+            for (Map<String, String> mappings : List.of(teacherMappings, roomMappings)) {
+                new TreeMap<>(mappings).forEach((k, v) -> content.append(k).append('\u0001').append(v).append('\u0002'));
+                content.append('\u0003');
+            }
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> freeze(Map<String, String> mappings) {
+        return Collections.unmodifiableMap(new HashMap<>(mappings));
+    }
+}
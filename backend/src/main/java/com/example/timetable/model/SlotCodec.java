@@ -0,0 +1,159 @@
+package com.example.timetable.model;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Codage des créneaux de la semaine en entiers denses : (jour, demi-journée, heure) -> ordinal
+ * {@code ((jour * 2) + demi-journée) * heuresParDemiJournée + (heure - 1)}.
+ * Deux heures consécutives d'une même demi-journée ont des ordinaux consécutifs ; l'ordre des
+ * ordinaux est l'ordre chronologique.
+ *
+ * Libellés, plages horaires (ex: "08:30 - 09:30") et clés de tri sont calculés une seule fois par
+ * ordinal. Les créneaux hors grille (jour inconnu, heure non numérotée ou au-delà du nombre
+ * d'heures configuré) n'ont pas d'ordinal ({@link #NONE}) : ils sont triés après les heures connues
+ * de leur demi-journée et ne sont jamais fusionnés.
+ */
+public final class SlotCodec {
+
+    public static final int NONE = -1;
+
+    /** Jours de la semaine (index de jour -> libellé). */
+    public static final List<String> DAYS = List.of("Lundi", "Mardi", "Mercredi", "Jeudi", "Vendredi", "Samedi");
+
+    private static final String[] DAY_PREFIXES = {"lundi", "mardi", "mercredi", "jeudi", "vendredi", "samedi"};
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    /** Grille historique : H1 à H4, matin à 08:30, après-midi à 14:30, heures d'une heure. */
+    public static final SlotCodec DEFAULT = new SlotCodec(4, LocalTime.of(8, 30), LocalTime.of(14, 30), Duration.ofHours(1));
+
+    private final int hoursPerHalfDay;
+    private final String[] hourIds;      // ordinal -> "H3"
+    private final String[] starts;       // ordinal -> "10:30"
+    private final String[] ends;         // ordinal -> "11:30"
+    private final String[] timeslots;    // ordinal -> "10:30 - 11:30"
+    private final int[] sortKeys;        // ordinal -> clé de tri
+    private final List<String> dayTimeslots;
+
+    public SlotCodec(int hoursPerHalfDay, LocalTime morningStart, LocalTime afternoonStart, Duration hourLength) {
+        if (hoursPerHalfDay < 1) throw new IllegalArgumentException("hoursPerHalfDay doit être positif: " + hoursPerHalfDay);
+        this.hoursPerHalfDay = hoursPerHalfDay;
+        int count = DAYS.size() * 2 * hoursPerHalfDay;
+        this.hourIds = new String[count];
+        this.starts = new String[count];
+        this.ends = new String[count];
+        this.timeslots = new String[count];
+        this.sortKeys = new int[count];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            int hour = hour(ordinal);
+            LocalTime start = (morning(ordinal) ? morningStart : afternoonStart).plus(hourLength.multipliedBy(hour - 1));
+            hourIds[ordinal] = "H" + hour;
+            starts[ordinal] = start.format(TIME);
+            ends[ordinal] = start.plus(hourLength).format(TIME);
+            timeslots[ordinal] = starts[ordinal] + " - " + ends[ordinal];
+            sortKeys[ordinal] = (ordinal / hoursPerHalfDay) * (hoursPerHalfDay + 1) + (hour - 1);
+        }
+        // Plages d'une journée type (lignes des grilles PDF) : matin puis après-midi
+        this.dayTimeslots = List.of(Arrays.copyOf(timeslots, 2 * hoursPerHalfDay));
+    }
+
+    // ==================== Noms FET ====================
+
+    /** Index du jour d'un nom de jour FET ("Lundi_M", "mardi_s"...), ou {@link #NONE}. */
+    public static int dayIndex(String dayRaw) {
+        String low = dayRaw.toLowerCase();
+        for (int d = 0; d < DAY_PREFIXES.length; d++) {
+            if (low.startsWith(DAY_PREFIXES[d])) return d;
+        }
+        return NONE;
+    }
+
+    /** Demi-journée d'un nom de jour FET : "_m" pour le matin, le reste est l'après-midi. */
+    public static boolean isMorning(String dayRaw) {
+        return dayRaw.toLowerCase().endsWith("_m");
+    }
+
+    /** Première heure d'un identifiant "H2" ou d'une plage "H2-H3", ou {@link #NONE}. */
+    public static int hourStart(String hourId) {
+        if (hourId == null) return NONE;
+        int dash = hourId.indexOf('-');
+        return hourNumber(dash < 0 ? hourId : hourId.substring(0, dash));
+    }
+
+    /** Dernière heure d'un identifiant "H2" ou d'une plage "H2-H3", ou {@link #NONE}. */
+    public static int hourEnd(String hourId) {
+        if (hourId == null) return NONE;
+        int dash = hourId.indexOf('-');
+        if (dash >= 0 && hourId.startsWith("H", dash + 1)) return hourNumber(hourId.substring(dash + 1));
+        return hourStart(hourId);
+    }
+
+    private static int hourNumber(String hourId) {
+        if (!hourId.startsWith("H")) return NONE;
+        try {
+            return Integer.parseInt(hourId.substring(1));
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    // ==================== Ordinaux ====================
+
+    /** Ordinal d'un créneau, ou {@link #NONE} s'il est hors grille. */
+    public int encode(int day, boolean morning, int hour) {
+        if (day < 0 || day >= DAYS.size() || hour < 1 || hour > hoursPerHalfDay) return NONE;
+        return ((day * 2) + (morning ? 0 : 1)) * hoursPerHalfDay + (hour - 1);
+    }
+
+    public int count() { return timeslots.length; }
+
+    public int hoursPerHalfDay() { return hoursPerHalfDay; }
+
+    public int day(int ordinal) { return ordinal / (2 * hoursPerHalfDay); }
+
+    public boolean morning(int ordinal) { return (ordinal / hoursPerHalfDay) % 2 == 0; }
+
+    /** Numéro de l'heure dans sa demi-journée (1 pour H1). */
+    public int hour(int ordinal) { return ordinal % hoursPerHalfDay + 1; }
+
+    public String timeslot(int ordinal) { return timeslots[ordinal]; }
+
+    /** Plage horaire de plusieurs heures consécutives (ex: "08:30 - 10:30"). */
+    public String timeslot(int first, int last) {
+        return first == last ? timeslots[first] : starts[first] + " - " + ends[last];
+    }
+
+    /** Identifiant d'une ou plusieurs heures consécutives (ex: "H1", "H1-H2"). */
+    public String hourId(int first, int last) {
+        return first == last ? hourIds[first] : hourIds[first] + "-" + hourIds[last];
+    }
+
+    /** Vrai si {@code next} est l'heure qui suit {@code previous} dans la même demi-journée. */
+    public boolean consecutive(int previous, int next) {
+        return previous != NONE && next == previous + 1 && next / hoursPerHalfDay == previous / hoursPerHalfDay;
+    }
+
+    /**
+     * Clé de tri chronologique : jour, matin avant après-midi, puis heure. Un créneau hors grille
+     * ({@code ordinal == NONE}) passe après les heures connues de sa demi-journée, un jour inconnu
+     * après tous les jours.
+     */
+    public int sortKey(int ordinal, int day, boolean morning) {
+        if (ordinal != NONE) return sortKeys[ordinal];
+        int halfDay = (day == NONE ? DAYS.size() : day) * 2 + (morning ? 0 : 1);
+        return halfDay * (hoursPerHalfDay + 1) + hoursPerHalfDay;
+    }
+
+    /** Rang d'une heure dans la journée (0 pour la première heure du matin), pour les lignes des grilles. */
+    public int rowInDay(int ordinal) {
+        return ordinal % (2 * hoursPerHalfDay);
+    }
+
+    /** Plages horaires d'une journée, matin puis après-midi. */
+    public List<String> dayTimeslots() {
+        return dayTimeslots;
+    }
+}
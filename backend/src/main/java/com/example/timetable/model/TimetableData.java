@@ -0,0 +1,520 @@
+package com.example.timetable.model;
+
+import java.util.*;
+
+/**
+ * Modèle compact et immuable d'un emploi du temps FET (professeurs, sous-groupes, activités).
+ *
+ * Toutes les chaînes (noms, matières, salles, jours, heures) sont internées une seule fois
+ * dans un dictionnaire et référencées par un id entier. Chaque couple (jour brut, heure) est
+ * un créneau numéroté ; l'emploi du temps d'un professeur ou d'un sous-groupe est une ligne
+ * de tableaux primitifs indexée par ce numéro de créneau.
+ */
+public final class TimetableData {
+
+    /** Cellule absente (aucune heure déclarée à ce créneau). */
+    public static final int NONE = -1;
+
+    public static final TimetableData EMPTY = new Builder().build();
+
+    // Champs d'une cellule professeur
+    static final int T_SUBJECT = 0, T_STUDENTS = 1, T_ROOM = 2, T_ACTIVITY = 3, T_FIELDS = 4;
+    // Champs d'une cellule sous-groupe
+    static final int S_TEACHER = 0, S_SUBJECT = 1, S_ROOM = 2, S_ACTIVITY = 3, S_FIELDS = 4;
+
+    private final String[] strings;          // id -> chaîne (id 0 = "")
+    private final int[] slotDays;            // créneau -> id du jour brut (ex: "lundi_m")
+    private final int[] slotHours;           // créneau -> id de l'heure (ex: "H1")
+    private final int slotCount;
+    private final int[] slotDayIndex;        // créneau -> index du jour (SlotCodec.DAYS), ou NONE
+    private final boolean[] slotMorning;     // créneau -> matin ("_m") ou après-midi
+    private final int[] slotHourNumber;      // créneau -> numéro de l'heure ("H3" -> 3), ou NONE
+
+    private final int[] teacherNames;
+    private final Map<String, Integer> teacherIndex;
+    private final int[] teacherCells;        // [professeur][créneau][champ]
+
+    private final int[] subgroupNames;
+    private final int[] subgroupCells;       // [sous-groupe][créneau][champ]
+    private final String[] subgroupClasses;  // sous-groupe -> nom de classe nettoyé
+    private final ClassIndex classIndex;
+
+    private final int[] activityIds;
+    private final int[] activitySlots;
+    private final int[] activityRooms;
+    private final ActivityIndex activityIndex;
+
+    private final String[] rooms;            // salles distinctes (nom nettoyé), triées
+    private final List<String> scheduleRooms;           // salles des emplois du temps professeurs/sous-groupes, triées
+    private final Map<String, int[]> subjectTeachers;   // matière (nettoyée) -> professeurs, triée par matière
+    private final Map<String, Integer> roomIndex;
+    private final RoomOccupancy roomOccupancy;
+    private final Map<String, RoomSchedule> roomSchedules;
+    private final long estimatedBytes;
+
+    private TimetableData(Builder b) {
+        this(b.strings.toArray(new String[0]), b.slotDays.toArray(), b.slotHours.toArray(),
+                b.teacherNames.toArray(), fillCells(b.teacherRows, b.teacherStarts, b.teacherNames.size(), b.slotDays.size(), T_FIELDS),
+                b.subgroupNames.toArray(), fillCells(b.subgroupRows, b.subgroupStarts, b.subgroupNames.size(), b.slotDays.size(), S_FIELDS),
+                b.activityIds.toArray(), b.activitySlots.toArray(), b.activityRooms.toArray());
+    }
+
+    /**
+     * Modèle à partir de ses tableaux compacts (voir {@link TimetableSnapshot}) ;
+     * les index dérivés (salles, classes, activités) sont recalculés.
+     */
+    TimetableData(String[] strings, int[] slotDays, int[] slotHours,
+                  int[] teacherNames, int[] teacherCells, int[] subgroupNames, int[] subgroupCells,
+                  int[] activityIds, int[] activitySlots, int[] activityRooms) {
+        this.strings = strings;
+        this.slotDays = slotDays;
+        this.slotHours = slotHours;
+        this.slotCount = slotDays.length;
+        // Noms FET des créneaux décodés une seule fois (voir SlotCodec)
+        this.slotDayIndex = new int[slotCount];
+        this.slotMorning = new boolean[slotCount];
+        this.slotHourNumber = new int[slotCount];
+        for (int s = 0; s < slotCount; s++) {
+            slotDayIndex[s] = SlotCodec.dayIndex(strings[slotDays[s]]);
+            slotMorning[s] = SlotCodec.isMorning(strings[slotDays[s]]);
+            slotHourNumber[s] = SlotCodec.hourStart(strings[slotHours[s]]);
+        }
+
+        this.teacherNames = teacherNames;
+        this.teacherIndex = nameIndex(teacherNames);
+        this.teacherCells = teacherCells;
+
+        this.subgroupNames = subgroupNames;
+        this.subgroupCells = subgroupCells;
+        this.subgroupClasses = new String[subgroupNames.length];
+        Map<String, String> classNames = new HashMap<>();
+        for (int g = 0; g < subgroupNames.length; g++) {
+            String cleaned = ClassNames.sanitizeClassName(ClassNames.extractClassBase(strings[subgroupNames[g]]));
+            subgroupClasses[g] = classNames.computeIfAbsent(cleaned, k -> k);
+        }
+        this.classIndex = new ClassIndex(this);
+
+        this.activityIds = activityIds;
+        this.activitySlots = activitySlots;
+        this.activityRooms = activityRooms;
+        this.activityIndex = new ActivityIndex(this, strings.length);
+
+        // Toutes les salles vues dans les trois fichiers (même règle que les anciens parcours : trim, non vide) ;
+        // le même parcours des cellules professeurs indexe les matières enseignées
+        Set<String> allRooms = new TreeSet<>();
+        this.subjectTeachers = subjectTeachers(allRooms);
+        collectRooms(subgroupCells, S_FIELDS, S_ROOM, allRooms);
+        this.scheduleRooms = List.copyOf(allRooms);
+        for (int room : activityRooms) {
+            String r = strings[room].trim();
+            if (!r.isEmpty()) allRooms.add(r);
+        }
+        this.rooms = allRooms.toArray(new String[0]);
+        Map<String, Integer> roomIds = new HashMap<>();
+        for (int r = 0; r < rooms.length; r++) roomIds.put(rooms[r], r);
+        this.roomIndex = Map.copyOf(roomIds);
+
+        // Index d'occupation : chaque id de chaîne utilisé comme salle est résolu une seule fois
+        int[] roomOfString = new int[strings.length];
+        Arrays.fill(roomOfString, Integer.MIN_VALUE);
+        this.roomOccupancy = new RoomOccupancy(slotCount, rooms.length);
+        markRooms(teacherCells, T_FIELDS, T_ROOM, roomOfString);
+        markRooms(subgroupCells, S_FIELDS, S_ROOM, roomOfString);
+        for (int a = 0; a < activityRooms.length; a++) {
+            int room = resolveRoom(activityRooms[a], roomOfString);
+            if (room != NONE) roomOccupancy.mark(activitySlots[a], room);
+        }
+
+        // Index inversé salle -> créneaux (vue par salle)
+        this.roomSchedules = RoomSchedule.index(this);
+        this.estimatedBytes = computeEstimatedBytes();
+    }
+
+    private void markRooms(int[] cells, int fields, int roomField, int[] roomOfString) {
+        for (int i = roomField; i < cells.length; i += fields) {
+            if (cells[i] == NONE) continue;
+            int room = resolveRoom(cells[i], roomOfString);
+            if (room != NONE) roomOccupancy.mark((i / fields) % slotCount, room);
+        }
+    }
+
+    private int resolveRoom(int stringId, int[] roomOfString) {
+        if (roomOfString[stringId] == Integer.MIN_VALUE) {
+            Integer room = roomIndex.get(strings[stringId].trim());
+            roomOfString[stringId] = room == null ? NONE : room;
+        }
+        return roomOfString[stringId];
+    }
+
+    /**
+     * Construit le tableau plat des cellules à partir des lignes (entité, créneau, champs...).
+     * Une entité redéclarée (même nom) remplace les heures lues précédemment.
+     */
+    private static int[] fillCells(IntBuffer rows, IntBuffer starts, int entityCount, int slotCount, int fields) {
+        int[] cells = new int[entityCount * slotCount * fields];
+        Arrays.fill(cells, NONE);
+        int rowSize = 2 + fields;
+        for (int i = 0, row = 0; i < rows.size(); i += rowSize, row++) {
+            int entity = rows.get(i);
+            if (row < starts.get(entity)) continue;
+            int base = (entity * slotCount + rows.get(i + 1)) * fields;
+            for (int f = 0; f < fields; f++) cells[base + f] = rows.get(i + 2 + f);
+        }
+        return cells;
+    }
+
+    private Map<String, Integer> nameIndex(int[] names) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < names.length; i++) index.put(strings[names[i]], i);
+        return Map.copyOf(index);
+    }
+
+    private Map<String, int[]> subjectTeachers(Set<String> rooms) {
+        Map<String, IntBuffer> teachers = new TreeMap<>();
+        for (int t = 0; t < teacherNames.length; t++) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                int base = (t * slotCount + slot) * T_FIELDS;
+                if (teacherCells[base + T_SUBJECT] == NONE) continue;
+                String room = strings[teacherCells[base + T_ROOM]].trim();
+                if (!room.isEmpty()) rooms.add(room);
+                String subject = strings[teacherCells[base + T_SUBJECT]].trim();
+                if (subject.isEmpty()) continue;
+                IntBuffer ids = teachers.computeIfAbsent(subject, k -> new IntBuffer());
+                if (ids.size() == 0 || ids.get(ids.size() - 1) != t) ids.add(t);
+            }
+        }
+        Map<String, int[]> out = new TreeMap<>();
+        teachers.forEach((subject, ids) -> out.put(subject, ids.toArray()));
+        return Collections.unmodifiableMap(out);
+    }
+
+    private void collectRooms(int[] cells, int fields, int roomField, Set<String> out) {
+        for (int i = roomField; i < cells.length; i += fields) {
+            if (cells[i] == NONE) continue;
+            String r = strings[cells[i]].trim();
+            if (!r.isEmpty()) out.add(r);
+        }
+    }
+
+    public boolean isEmpty() {
+        return teacherNames.length == 0 && subgroupNames.length == 0 && activitySlots.length == 0;
+    }
+
+    // ==================== Créneaux ====================
+
+    public int slotCount() { return slotCount; }
+
+    String string(int id) { return strings[id]; }
+
+    public String dayRaw(int slot) { return strings[slotDays[slot]]; }
+
+    public String hour(int slot) { return strings[slotHours[slot]]; }
+
+    /** Index du jour du créneau ({@link SlotCodec#DAYS}), ou {@link #NONE} pour un jour inconnu. */
+    public int slotDay(int slot) { return slotDayIndex[slot]; }
+
+    public boolean isMorning(int slot) { return slotMorning[slot]; }
+
+    /** Numéro de l'heure du créneau ("H3" -> 3), ou {@link #NONE}. */
+    public int slotHour(int slot) { return slotHourNumber[slot]; }
+
+    /** Ordinal du créneau dans la grille {@code codec}, ou {@link SlotCodec#NONE} s'il est hors grille. */
+    public int slotOrdinal(SlotCodec codec, int slot) {
+        return codec.encode(slotDayIndex[slot], slotMorning[slot], slotHourNumber[slot]);
+    }
+
+    // ==================== Professeurs ====================
+
+    public int teacherCount() { return teacherNames.length; }
+
+    public String teacherName(int teacher) { return strings[teacherNames[teacher]]; }
+
+    /** Index du professeur portant ce nom original, ou {@link #NONE}. */
+    public int teacherId(String name) {
+        Integer id = name == null ? null : teacherIndex.get(name);
+        return id == null ? NONE : id;
+    }
+
+    public boolean hasTeacherSlot(int teacher, int slot) {
+        return teacherCells[(teacher * slotCount + slot) * T_FIELDS + T_SUBJECT] != NONE;
+    }
+
+    public String teacherSubject(int teacher, int slot) { return teacherField(teacher, slot, T_SUBJECT); }
+
+    public String teacherStudents(int teacher, int slot) { return teacherField(teacher, slot, T_STUDENTS); }
+
+    public String teacherRoom(int teacher, int slot) { return teacherField(teacher, slot, T_ROOM); }
+
+    /** Activité (index de {@link #activityIndex()}) de ce créneau du professeur, ou {@link #NONE}. */
+    public int teacherActivity(int teacher, int slot) {
+        return activityIndex.ofString(teacherActivityString(teacher, slot));
+    }
+
+    int teacherActivityString(int teacher, int slot) {
+        return teacherCells[(teacher * slotCount + slot) * T_FIELDS + T_ACTIVITY];
+    }
+
+    private String teacherField(int teacher, int slot, int field) {
+        int id = teacherCells[(teacher * slotCount + slot) * T_FIELDS + field];
+        return id == NONE ? "" : strings[id];
+    }
+
+    // ==================== Sous-groupes ====================
+
+    public int subgroupCount() { return subgroupNames.length; }
+
+    public String subgroupName(int subgroup) { return strings[subgroupNames[subgroup]]; }
+
+    /** Nom de classe nettoyé du sous-groupe (ex: "3APIC-5" pour "3APIC-5:G1"). */
+    public String subgroupClass(int subgroup) { return subgroupClasses[subgroup]; }
+
+    /** Index classe -> sous-groupes, calculé à la construction du modèle. */
+    public ClassIndex classIndex() { return classIndex; }
+
+    public boolean hasSubgroupSlot(int subgroup, int slot) {
+        return subgroupCells[(subgroup * slotCount + slot) * S_FIELDS + S_SUBJECT] != NONE;
+    }
+
+    public String subgroupTeacher(int subgroup, int slot) { return subgroupField(subgroup, slot, S_TEACHER); }
+
+    public String subgroupSubject(int subgroup, int slot) { return subgroupField(subgroup, slot, S_SUBJECT); }
+
+    public String subgroupRoom(int subgroup, int slot) { return subgroupField(subgroup, slot, S_ROOM); }
+
+    int subgroupActivityString(int subgroup, int slot) {
+        return subgroupCells[(subgroup * slotCount + slot) * S_FIELDS + S_ACTIVITY];
+    }
+
+    private String subgroupField(int subgroup, int slot, int field) {
+        int id = subgroupCells[(subgroup * slotCount + slot) * S_FIELDS + field];
+        return id == NONE ? "" : strings[id];
+    }
+
+    // ==================== Activités ====================
+
+    public int activityCount() { return activitySlots.length; }
+
+    public int activitySlot(int activity) { return activitySlots[activity]; }
+
+    public String activityRoom(int activity) { return strings[activityRooms[activity]]; }
+
+    /** Identifiant FET de l'activité (balise {@code <Id>} de activities.xml), "" si absent. */
+    public String activityId(int activity) { return strings[activityIds[activity]]; }
+
+    int activityIdString(int activity) { return activityIds[activity]; }
+
+    /** Jointure professeurs / sous-groupes / activités sur l'identifiant d'activité. */
+    public ActivityIndex activityIndex() { return activityIndex; }
+
+    // ==================== Salles ====================
+
+    /** Nombre de salles distinctes vues dans les trois fichiers. */
+    public int roomCount() { return rooms.length; }
+
+    /** Nom (nettoyé) de la salle, dans l'ordre alphabétique. */
+    public String roomName(int room) { return rooms[room]; }
+
+    /**
+     * Salles des emplois du temps professeurs et sous-groupes (sans les salles propres à activities.xml),
+     * triées : la liste renvoyée à l'upload.
+     */
+    public List<String> scheduleRooms() { return scheduleRooms; }
+
+    /** Matière (nettoyée, non vide) -> index des professeurs qui l'enseignent, matières triées. */
+    public Map<String, int[]> subjectTeachers() { return subjectTeachers; }
+
+    /** Occupation des salles par créneau, calculée à la construction du modèle. */
+    public RoomOccupancy roomOccupancy() { return roomOccupancy; }
+
+    /** Créneaux occupés d'une salle (nom comparé sans tenir compte de la casse), vide si inconnue. */
+    public RoomSchedule roomSchedule(String name) {
+        if (name == null) return RoomSchedule.EMPTY;
+        return roomSchedules.getOrDefault(RoomSchedule.key(name), RoomSchedule.EMPTY);
+    }
+
+    /**
+     * Estimation de la mémoire occupée par ce modèle (tableaux et chaînes), en octets.
+     */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private long computeEstimatedBytes() {
+        long bytes = 16L * 4;
+        for (String s : strings) bytes += 40 + 2L * s.length();
+        bytes += 9L * slotCount;
+        bytes += 4L * (slotDays.length + slotHours.length + teacherNames.length + subgroupNames.length
+                + teacherCells.length + subgroupCells.length + activityIds.length + activitySlots.length + activityRooms.length);
+        bytes += 48L * (teacherIndex.size() + roomIndex.size()) + 8L * rooms.length;
+        bytes += roomOccupancy.estimatedBytes() + classIndex.estimatedBytes() + activityIndex.estimatedBytes()
+                + 8L * subgroupClasses.length;
+        for (RoomSchedule r : roomSchedules.values()) bytes += r.estimatedBytes();
+        bytes += 8L * scheduleRooms.size();
+        for (int[] ids : subjectTeachers.values()) bytes += 48 + 4L * ids.length;
+        return bytes;
+    }
+
+    // Tableaux compacts, pour l'écriture du snapshot binaire (non copiés : ne pas modifier)
+    String[] rawStrings() { return strings; }
+    int[] rawSlotDays() { return slotDays; }
+    int[] rawSlotHours() { return slotHours; }
+    int[] rawTeacherNames() { return teacherNames; }
+    int[] rawTeacherCells() { return teacherCells; }
+    int[] rawSubgroupNames() { return subgroupNames; }
+    int[] rawSubgroupCells() { return subgroupCells; }
+    int[] rawActivityIds() { return activityIds; }
+    int[] rawActivitySlots() { return activitySlots; }
+    int[] rawActivityRooms() { return activityRooms; }
+
+    /**
+     * Construit un {@link TimetableData} au fil de la lecture des fichiers XML.
+     * Les chaînes sont internées au moment de l'ajout ; {@link #build()} produit le modèle compact.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private final IntBuffer slotDays = new IntBuffer();
+        private final IntBuffer slotHours = new IntBuffer();
+
+        private final Map<String, Integer> teachers = new HashMap<>();
+        private final IntBuffer teacherNames = new IntBuffer();
+        private final IntBuffer teacherStarts = new IntBuffer();
+        private final IntBuffer teacherRows = new IntBuffer();
+
+        private final Map<String, Integer> subgroups = new HashMap<>();
+        private final IntBuffer subgroupNames = new IntBuffer();
+        private final IntBuffer subgroupStarts = new IntBuffer();
+        private final IntBuffer subgroupRows = new IntBuffer();
+
+        private final IntBuffer activityIds = new IntBuffer();
+        private final IntBuffer activitySlots = new IntBuffer();
+        private final IntBuffer activityRooms = new IntBuffer();
+
+        public Builder() {
+            intern("");
+        }
+
+        private int intern(String s) {
+            String key = s == null ? "" : s;
+            Integer id = dictionary.get(key);
+            if (id == null) {
+                id = strings.size();
+                dictionary.put(key, id);
+                strings.add(key);
+            }
+            return id;
+        }
+
+        private int slot(String dayRaw, String hour) {
+            int day = intern(dayRaw);
+            int h = intern(hour);
+            long key = ((long) day << 32) | h;
+            Integer id = slots.get(key);
+            if (id == null) {
+                id = slotDays.size();
+                slots.put(key, id);
+                slotDays.add(day);
+                slotHours.add(h);
+            }
+            return id;
+        }
+
+        /** Déclare un professeur et retourne son index (un nom redéclaré repart d'un emploi du temps vide). */
+        public int addTeacher(String name) {
+            return declare(name, teachers, teacherNames, teacherStarts, teacherRows, 2 + T_FIELDS);
+        }
+
+        public void teacherHour(int teacher, String dayRaw, String hour, String activityId,
+                                String subject, String students, String room) {
+            teacherRows.add(teacher);
+            teacherRows.add(slot(dayRaw, hour));
+            teacherRows.add(intern(subject));
+            teacherRows.add(intern(students));
+            teacherRows.add(intern(room));
+            teacherRows.add(intern(activityId));
+        }
+
+        /** Déclare un sous-groupe et retourne son index (un nom redéclaré repart d'un emploi du temps vide). */
+        public int addSubgroup(String name) {
+            return declare(name, subgroups, subgroupNames, subgroupStarts, subgroupRows, 2 + S_FIELDS);
+        }
+
+        public void subgroupHour(int subgroup, String dayRaw, String hour, String activityId,
+                                 String teacher, String subject, String room) {
+            subgroupRows.add(subgroup);
+            subgroupRows.add(slot(dayRaw, hour));
+            subgroupRows.add(intern(teacher));
+            subgroupRows.add(intern(subject));
+            subgroupRows.add(intern(room));
+            subgroupRows.add(intern(activityId));
+        }
+
+        public void activity(String activityId, String dayRaw, String hour, String room) {
+            activityIds.add(intern(activityId));
+            activitySlots.add(slot(dayRaw, hour));
+            activityRooms.add(intern(room));
+        }
+
+        private int declare(String name, Map<String, Integer> index, IntBuffer names, IntBuffer starts,
+                            IntBuffer rows, int rowSize) {
+            String key = name == null ? "" : name;
+            int row = rows.size() / rowSize;
+            Integer id = index.get(key);
+            if (id != null) {
+                starts.set(id, row);
+                return id;
+            }
+            id = names.size();
+            index.put(key, id);
+            names.add(intern(key));
+            starts.add(row);
+            return id;
+        }
+
+        /**
+         * Ajoute le contenu d'un builder rempli séparément (un fichier parsé sur un autre thread).
+         * Chaînes, créneaux et entités sont réinternés dans leur ordre de première apparition dans la partie :
+         * le modèle obtenu est identique à une lecture des fichiers, dans le même ordre, avec un seul builder.
+         */
+        public Builder append(Builder part) {
+            int[] str = new int[part.strings.size()];
+            for (int i = 0; i < str.length; i++) str[i] = intern(part.strings.get(i));
+            int[] slot = new int[part.slotDays.size()];
+            for (int i = 0; i < slot.length; i++) {
+                slot[i] = slot(part.strings.get(part.slotDays.get(i)), part.strings.get(part.slotHours.get(i)));
+            }
+            appendRows(part.teacherNames, part.teacherStarts, part.teacherRows, 2 + T_FIELDS, str, slot,
+                    teachers, teacherNames, teacherStarts, teacherRows);
+            appendRows(part.subgroupNames, part.subgroupStarts, part.subgroupRows, 2 + S_FIELDS, str, slot,
+                    subgroups, subgroupNames, subgroupStarts, subgroupRows);
+            for (int a = 0; a < part.activitySlots.size(); a++) {
+                activityIds.add(str[part.activityIds.get(a)]);
+                activitySlots.add(slot[part.activitySlots.get(a)]);
+                activityRooms.add(str[part.activityRooms.get(a)]);
+            }
+            return this;
+        }
+
+        private void appendRows(IntBuffer partNames, IntBuffer partStarts, IntBuffer partRows, int rowSize,
+                                int[] str, int[] slot, Map<String, Integer> index, IntBuffer names,
+                                IntBuffer starts, IntBuffer rows) {
+            int[] entity = new int[partNames.size()];
+            for (int e = 0; e < entity.length; e++) {
+                entity[e] = declare(strings.get(str[partNames.get(e)]), index, names, starts, rows, rowSize);
+            }
+            for (int i = 0, row = 0; i < partRows.size(); i += rowSize, row++) {
+                int e = partRows.get(i);
+                // Heures d'une entité redéclarée plus loin dans le fichier : remplacées, comme à la lecture
+                if (row < partStarts.get(e)) continue;
+                rows.add(entity[e]);
+                rows.add(slot[partRows.get(i + 1)]);
+                for (int f = 2; f < rowSize; f++) rows.add(str[partRows.get(i + f)]);
+            }
+        }
+
+        public TimetableData build() {
+            return new TimetableData(this);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.timetable.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Snapshot binaire d'un {@link TimetableData} parsé : dictionnaire de chaînes et tableaux de créneaux,
+ * écrit à côté des XML de la session et relu par projection mémoire (memory-mapped).
+ *
+ * Les XML restent la référence : l'en-tête mémorise la taille et la date de modification de chaque
+ * fichier source ; un snapshot d'une autre version ou dont les sources ont changé est ignoré.
+ *
+ * Format (big-endian) : MAGIC, VERSION, empreinte des sources (nombre, puis taille/date par fichier),
+ * champs par cellule professeur/sous-groupe, chaînes (nombre, puis longueur UTF-8 + octets),
+ * puis les tableaux d'entiers (longueur + valeurs) dans l'ordre du constructeur de {@link TimetableData}.
+ */
+public final class TimetableSnapshot {
+
+    private static final int MAGIC = 0x46455453; // "FETS"
+    private static final int VERSION = 1;
+
+    private TimetableSnapshot() {
+    }
+
+    /**
+     * Écrit le snapshot du modèle (fichier temporaire puis remplacement atomique).
+     * {@code sources} : les XML dont le modèle est issu, absents compris.
+     */
+    public static void write(TimetableData data, Path file, List<Path> sources) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long[] fingerprint = fingerprint(sources);
+            out.writeInt(fingerprint.length);
+            for (long v : fingerprint) out.writeLong(v);
+            out.writeInt(TimetableData.T_FIELDS);
+            out.writeInt(TimetableData.S_FIELDS);
+
+            String[] strings = data.rawStrings();
+            out.writeInt(strings.length);
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (int[] array : List.of(data.rawSlotDays(), data.rawSlotHours(),
+                    data.rawTeacherNames(), data.rawTeacherCells(), data.rawSubgroupNames(), data.rawSubgroupCells(),
+                    data.rawActivityIds(), data.rawActivitySlots(), data.rawActivityRooms())) {
+                out.writeInt(array.length);
+                for (int v : array) out.writeInt(v);
+            }
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Relit le snapshot, ou retourne null s'il est absent, d'une autre version, incohérent
+     * ou qui n'est plus à jour par rapport aux XML sources.
+     */
+    public static TimetableData read(Path file, List<Path> sources) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() < 12 || buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            long[] expected = fingerprint(sources);
+            if (buf.getInt() != expected.length) return null;
+            for (long v : expected) {
+                if (buf.getLong() != v) return null;
+            }
+            if (buf.getInt() != TimetableData.T_FIELDS || buf.getInt() != TimetableData.S_FIELDS) return null;
+
+            String[] strings = new String[buf.getInt()];
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int len = buf.getInt();
+                if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+                buf.get(scratch, 0, len);
+                strings[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+            int[] slotDays = ints(buf), slotHours = ints(buf);
+            int[] teacherNames = ints(buf), teacherCells = ints(buf);
+            int[] subgroupNames = ints(buf), subgroupCells = ints(buf);
+            int[] activityIds = ints(buf), activitySlots = ints(buf), activityRooms = ints(buf);
+
+            int slots = slotDays.length;
+            if (slotHours.length != slots
+                    || teacherCells.length != teacherNames.length * slots * TimetableData.T_FIELDS
+                    || subgroupCells.length != subgroupNames.length * slots * TimetableData.S_FIELDS
+                    || activitySlots.length != activityIds.length || activityRooms.length != activityIds.length) {
+                return null;
+            }
+            return new TimetableData(strings, slotDays, slotHours, teacherNames, teacherCells,
+                    subgroupNames, subgroupCells, activityIds, activitySlots, activityRooms);
+        } catch (RuntimeException e) {
+            // Fichier tronqué ou corrompu : il sera régénéré depuis les XML
+            return null;
+        }
+    }
+
+    private static int[] ints(ByteBuffer buf) {
+        int[] out = new int[buf.getInt()];
+        buf.asIntBuffer().get(out);
+        buf.position(buf.position() + out.length * Integer.BYTES);
+        return out;
+    }
+
+    /** Taille et date de modification de chaque source (-1 si le fichier n'existe pas ou n'est pas fourni). */
+    private static long[] fingerprint(List<Path> sources) throws IOException {
+        long[] out = new long[sources.size() * 2];
+        for (int i = 0; i < sources.size(); i++) {
+            Path p = sources.get(i);
+            boolean exists = p != null && Files.isRegularFile(p);
+            out[2 * i] = exists ? Files.size(p) : -1;
+            out[2 * i + 1] = exists ? Files.getLastModifiedTime(p).toMillis() : -1;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.timetable.service;
+
+import com.example.timetable.model.DatasetKey;
+import com.example.timetable.model.TimetableData;
+import com.example.timetable.model.TimetableSnapshot;
+import com.example.timetable.xml.TimetableParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Jeux de données partagés entre sessions, adressés par contenu.
+ *
+ * Chaque export FET envoyé est stocké une seule fois sous son empreinte SHA-256
+ * (data/datasets/blobs/&lt;sha256&gt;.xml), calculée pendant l'écriture du flux. Un modèle parsé
+ * est identifié par les empreintes de ses trois fichiers ({@link DatasetKey}) : toutes les sessions
+ * qui ont envoyé les mêmes fichiers partagent la même instance, en lecture seule.
+ * Un modèle n'est gardé en mémoire que tant qu'une session le référence.
+ *
+ * Les trois fichiers sont parsés en parallèle, chacun dans son propre builder, puis assemblés.
+ * À l'upload, chaque flux n'est lu qu'une fois : il est haché et écrit sur disque pendant le parsing.
+ */
+@Service
+public class DatasetStore {
+
+    private static final Path DATASETS_ROOT = Paths.get("data", "datasets");
+    private static final Path BLOBS = DATASETS_ROOT.resolve("blobs");
+
+    private final Map<String, WeakReference<TimetableData>> datasets = new ConcurrentHashMap<>();
+    // Chargements en cours : les demandes simultanées du même jeu de données attendent le même résultat
+    private final Map<String, CompletableFuture<TimetableData>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong parses = new AtomicLong();
+    private final AtomicLong snapshotLoads = new AtomicLong();
+    private final AtomicLong blobsStored = new AtomicLong();
+    private final AtomicLong blobsReused = new AtomicLong();
+    private final AtomicLong uploadedParts = new AtomicLong();
+
+    @Value("${timetable.parser.mode:STAX}")
+    private TimetableParser.Mode parserMode = TimetableParser.Mode.STAX;
+
+    @Value("${timetable.parser.threads:3}")
+    private int parserThreads = 3;
+
+    private ExecutorService parsers;
+
+    /** Lecture d'un des trois fichiers FET dans un builder. */
+    @FunctionalInterface
+    private interface PartLoader {
+        void load(InputStream in, TimetableParser.Mode mode, TimetableData.Builder builder) throws Exception;
+    }
+
+    private static final List<PartLoader> LOADERS = List.of(
+            TimetableParser::loadTeachers, TimetableParser::loadSubgroups, TimetableParser::loadActivities);
+
+    /** Fichier envoyé : empreinte du contenu et contenu déjà parsé. */
+    private record Part(String hash, TimetableData.Builder builder) {
+    }
+
+    /**
+     * Fichiers d'un upload, stockés et parsés ; null pour un fichier non envoyé.
+     * Les parties parsées évitent de relire les fichiers pour construire le modèle.
+     */
+    public static final class Upload {
+        private final Part[] parts;
+
+        private Upload(Part[] parts) {
+            this.parts = parts;
+        }
+
+        public String teachers() { return hash(0); }
+
+        public String subgroups() { return hash(1); }
+
+        public String activities() { return hash(2); }
+
+        private String hash(int i) {
+            return parts[i] == null ? null : parts[i].hash();
+        }
+
+        private TimetableData.Builder builder(int i, String hash) {
+            return parts[i] != null && parts[i].hash().equals(hash) ? parts[i].builder() : null;
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        parsers = Executors.newFixedThreadPool(Math.max(1, parserThreads), r -> {
+            Thread t = new Thread(r, "dataset-parser");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        parsers.shutdownNow();
+    }
+
+    /**
+     * Lit les fichiers envoyés (null si absent), en parallèle et une seule fois chacun : le contenu est
+     * haché et écrit dans le stockage par empreinte pendant qu'il est parsé.
+     */
+    public Upload ingest(InputStream teachers, InputStream subgroups, InputStream activities) throws IOException {
+        List<InputStream> streams = Arrays.asList(teachers, subgroups, activities);
+        List<CompletableFuture<Part>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            InputStream in = streams.get(i);
+            PartLoader loader = LOADERS.get(i);
+            futures.add(in == null ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.supplyAsync(() -> ingest(in, loader), parsers));
+        }
+        Part[] parts = new Part[3];
+        for (int i = 0; i < 3; i++) parts[i] = join(futures.get(i));
+        return new Upload(parts);
+    }
+
+    private Part ingest(InputStream in, PartLoader loader) {
+        try {
+            Files.createDirectories(BLOBS);
+            Path tmp = Files.createTempFile(BLOBS, "upload-", ".tmp");
+            try {
+                MessageDigest digest = sha256();
+                TimetableData.Builder builder = new TimetableData.Builder();
+                try (InputStream source = in; OutputStream out = Files.newOutputStream(tmp)) {
+                    TeeInputStream tee = new TeeInputStream(new DigestInputStream(source, digest), out);
+                    loader.load(tee, parserMode, builder);
+                    tee.drain();
+                }
+                uploadedParts.incrementAndGet();
+                return new Part(keep(tmp, HexFormat.of().formatHex(digest.digest())), builder);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Fichier XML illisible: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Enregistre le contenu du flux sous son empreinte (une seule copie par contenu) et retourne l'empreinte.
+     */
+    public String store(InputStream in) throws IOException {
+        Files.createDirectories(BLOBS);
+        Path tmp = Files.createTempFile(BLOBS, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream hashing = new DigestInputStream(in, digest)) {
+                Files.copy(hashing, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return keep(tmp, HexFormat.of().formatHex(digest.digest()));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Dépose le fichier temporaire sous son empreinte, sauf si ce contenu est déjà stocké. */
+    private String keep(Path tmp, String hash) throws IOException {
+        Path blob = blob(hash);
+        if (Files.exists(blob)) {
+            blobsReused.incrementAndGet();
+        } else {
+            move(tmp, blob);
+            blobsStored.incrementAndGet();
+        }
+        return hash;
+    }
+
+    /**
+     * Place le fichier d'empreinte {@code hash} à l'emplacement {@code target} (lien physique,
+     * ou copie si le système de fichiers ne le permet pas).
+     */
+    public void link(String hash, Path target) throws IOException {
+        Path blob = blob(hash);
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, blob);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Modèle partagé du jeu de données : déjà en mémoire, sinon relu depuis son snapshot binaire,
+     * sinon parsé depuis les fichiers stockés (et le snapshot écrit).
+     */
+    public TimetableData dataset(DatasetKey key) {
+        return dataset(key, null);
+    }
+
+    /**
+     * Comme {@link #dataset(DatasetKey)}, en réutilisant les fichiers déjà parsés de l'upload
+     * (seules les parties non envoyées sont relues depuis le stockage).
+     */
+    public TimetableData dataset(DatasetKey key, Upload upload) {
+        if (key.isEmpty()) return TimetableData.EMPTY;
+        String id = key.id();
+        TimetableData cached = cached(id);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        // Un seul chargement par jeu de données, même si plusieurs sessions le demandent en même temps ;
+        // le parsing se fait hors de la map (aucun verrou tenu pendant la lecture des fichiers)
+        CompletableFuture<TimetableData> mine = new CompletableFuture<>();
+        CompletableFuture<TimetableData> running = loading.putIfAbsent(id, mine);
+        if (running != null) {
+            hits.incrementAndGet();
+            return join(running);
+        }
+        try {
+            // Un chargement a pu se terminer entre la lecture du cache et l'inscription
+            TimetableData data = cached(id);
+            if (data == null) {
+                data = load(key, id, upload);
+                datasets.put(id, new WeakReference<>(data));
+            }
+            mine.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            // Pas de résultat gardé : la demande suivante recommence le chargement
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(id, mine);
+            datasets.values().removeIf(ref -> ref.get() == null);
+        }
+    }
+
+    private TimetableData cached(String id) {
+        WeakReference<TimetableData> ref = datasets.get(id);
+        return ref == null ? null : ref.get();
+    }
+
+    private TimetableData load(DatasetKey key, String id, Upload upload) {
+        List<Path> sources = Arrays.asList(source(key.teachers()), source(key.subgroups()), source(key.activities()));
+        Path snapshotFile = DATASETS_ROOT.resolve(id + ".snapshot");
+        try {
+            TimetableData data = TimetableSnapshot.read(snapshotFile, sources);
+            if (data != null) {
+                snapshotLoads.incrementAndGet();
+                return data;
+            }
+            data = parse(key, sources, upload);
+            parses.incrementAndGet();
+            try {
+                TimetableSnapshot.write(data, snapshotFile, sources);
+            } catch (IOException e) {
+                // Le snapshot n'est qu'un accélérateur : les XML restent la référence
+                System.err.println("⚠ Snapshot non écrit pour le jeu de données " + id + ": " + e.getMessage());
+            }
+            return data;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Jeu de données illisible: " + e.getMessage(), e);
+        }
+    }
+
+    private TimetableData parse(DatasetKey key, List<Path> sources, Upload upload) {
+        List<String> hashes = List.of(key.teachers(), key.subgroups(), key.activities());
+        List<CompletableFuture<TimetableData.Builder>> parts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TimetableData.Builder parsed = upload == null ? null : upload.builder(i, hashes.get(i));
+            Path source = sources.get(i);
+            PartLoader loader = LOADERS.get(i);
+            if (parsed != null || source == null) {
+                parts.add(CompletableFuture.completedFuture(parsed));
+            } else {
+                parts.add(CompletableFuture.supplyAsync(() -> parse(source, loader), parsers));
+            }
+        }
+        // Assemblage dans l'ordre professeurs, sous-groupes, activités (ids identiques à une lecture séquentielle)
+        TimetableData.Builder builder = new TimetableData.Builder();
+        for (CompletableFuture<TimetableData.Builder> part : parts) {
+            TimetableData.Builder b = join(part);
+            if (b != null) builder.append(b);
+        }
+        return builder.build();
+    }
+
+    private TimetableData.Builder parse(Path source, PartLoader loader) {
+        TimetableData.Builder builder = new TimetableData.Builder();
+        try (InputStream in = Files.newInputStream(source)) {
+            loader.load(in, parserMode, builder);
+            return builder;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Fichier XML illisible: " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /** Compteurs : modèles partagés en mémoire, réutilisations, parsings, fichiers stockés ou dédupliqués. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inMemory", datasets.values().stream().filter(ref -> ref.get() != null).count());
+        stats.put("hits", hits.get());
+        stats.put("parses", parses.get());
+        stats.put("snapshotLoads", snapshotLoads.get());
+        stats.put("blobsStored", blobsStored.get());
+        stats.put("blobsReused", blobsReused.get());
+        stats.put("uploadedParts", uploadedParts.get());
+        return stats;
+    }
+
+    private static Path source(String hash) {
+        return hash.isEmpty() ? null : blob(hash);
+    }
+
+    private static Path blob(String hash) {
+        return BLOBS.resolve(hash + ".xml");
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Un autre upload du même contenu a pu le déposer entre-temps
+            if (!Files.exists(to)) Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
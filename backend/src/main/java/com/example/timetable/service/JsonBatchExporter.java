@@ -0,0 +1,48 @@
+package com.example.timetable.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Calcul des lignes des exports NDJSON (emplois du temps de tous les professeurs, classes ou salles)
+ * sur un petit pool dédié : un export JSON n'occupe pas les threads de rendu PDF.
+ */
+@Service
+public class JsonBatchExporter {
+
+    @Value("${timetable.json.threads:2}")
+    private int threads = 2;
+
+    private ExecutorService pool;
+
+    @PostConstruct
+    void start() {
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "json-export");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Calcule les lignes en parallèle et les remet à {@code sink} dans l'ordre de la liste
+     * (sur le thread appelant, null si le calcul a échoué) ; les calculs d'avance sont limités à la fenêtre.
+     */
+    public <T> void exportInOrder(List<T> items, Function<T, byte[]> line,
+                                  OrderedParallel.Sink<T, byte[]> sink) throws IOException {
+        OrderedParallel.forEachInOrder(pool, 2 * Math.max(1, threads), items, line, sink);
+    }
+}
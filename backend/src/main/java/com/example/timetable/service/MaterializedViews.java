@@ -0,0 +1,193 @@
+package com.example.timetable.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Réponses JSON pré-calculées : à chaque nouvelle version des données (upload, renommage), un thread
+ * de fond calcule tous les emplois du temps (professeurs, classes, salles), les sérialise et les
+ * compresse (gzip). Les GET deviennent une recherche dans une map et une copie d'octets ; tant que
+ * la vue n'est pas prête, l'endpoint calcule en direct.
+ *
+ * Les vues sont rangées par version des données ({@code SessionSnapshot.version()}) : les sessions
+ * qui ont les mêmes fichiers et renommages partagent les mêmes vues. Budget mémoire global, les
+ * versions les moins récemment utilisées sont retirées en premier ; une version qui dépasse à elle
+ * seule le budget reste incomplète (les vues manquantes sont calculées en direct). Un calcul en échec
+ * retire sa version : elle sera recalculée à la prochaine demande.
+ */
+@Service
+public class MaterializedViews {
+
+    /** Vues d'une version des données (remplies au fil du calcul). */
+    private static final class Views {
+        final Map<String, byte[]> gzip = new ConcurrentHashMap<>();
+        volatile boolean complete;
+        long bytes;
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Ordre d'accès : la première version est la moins récemment utilisée
+    private final LinkedHashMap<String, Views> versions = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong materialized = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+
+    private final ExecutorService materializer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "view-materializer");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    @Value("${timetable.views.max-memory:64MB}")
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+    @PreDestroy
+    void stop() {
+        materializer.shutdownNow();
+    }
+
+    /**
+     * Lance le calcul en tâche de fond des vues d'une version (rien si elle est déjà calculée ou en cours).
+     * {@code views} : nom de la vue -> calcul de la réponse (objet sérialisé comme par l'endpoint).
+     */
+    public void materialize(String version, Map<String, Supplier<Object>> views) {
+        Views target;
+        synchronized (this) {
+            if (versions.containsKey(version)) return;
+            target = new Views();
+            versions.put(version, target);
+        }
+        pending.incrementAndGet();
+        materializer.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                for (Map.Entry<String, Supplier<Object>> view : views.entrySet()) {
+                    if (!isCurrent(version, target)) return; // retirée (budget) : inutile de continuer
+                    byte[] bytes = gzip(objectMapper.writeValueAsBytes(view.getValue().get()));
+                    if (!store(version, target, view.getKey(), bytes)) {
+                        // Version plus grosse que le budget : les vues restantes sont calculées en direct
+                        System.err.println("⚠ Pré-calcul des vues arrêté: budget de " + maxMemory + " atteint ("
+                                + target.gzip.size() + "/" + views.size() + " vues)");
+                        return;
+                    }
+                }
+                target.complete = true;
+                materialized.incrementAndGet();
+                System.out.println("🗜 Vues pré-calculées: " + views.size() + " en " + (System.currentTimeMillis() - start) + " ms");
+            } catch (Exception e) {
+                // Retirer la version à moitié remplie : la prochaine demande relance le calcul
+                discard(version, target);
+                System.err.println("⚠ Pré-calcul des vues interrompu: " + e.getMessage());
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Réponse pré-calculée (JSON compressé en gzip), ou null si elle n'est pas (encore) disponible.
+     */
+    public byte[] get(String version, String view) {
+        Views views;
+        synchronized (this) {
+            views = versions.get(version);
+        }
+        byte[] bytes = views != null ? views.gzip.get(view) : null;
+        (bytes != null ? hits : misses).incrementAndGet();
+        return bytes;
+    }
+
+    /** true si aucune vue n'a été demandée pour cette version (à lancer, par exemple après redémarrage). */
+    public synchronized boolean isMissing(String version) {
+        return !versions.containsKey(version);
+    }
+
+    private synchronized boolean isCurrent(String version, Views views) {
+        return versions.get(version) == views;
+    }
+
+    /**
+     * Ajoute une vue à sa version en retirant d'abord les autres versions les moins récemment utilisées
+     * si besoin. false si la vue ne tient pas dans le budget même seule avec sa version : elle n'est
+     * pas gardée.
+     */
+    private synchronized boolean store(String version, Views views, String view, byte[] bytes) {
+        if (versions.get(version) != views) return true;
+        Iterator<Map.Entry<String, Views>> it = versions.entrySet().iterator();
+        while (totalBytes + bytes.length > maxMemory.toBytes() && it.hasNext()) {
+            Map.Entry<String, Views> eldest = it.next();
+            if (eldest.getValue() == views) continue;
+            it.remove();
+            totalBytes -= eldest.getValue().bytes;
+            evictions.incrementAndGet();
+        }
+        if (totalBytes + bytes.length > maxMemory.toBytes()) return false;
+        views.gzip.put(view, bytes);
+        views.bytes += bytes.length;
+        totalBytes += bytes.length;
+        return true;
+    }
+
+    private synchronized void discard(String version, Views views) {
+        if (versions.remove(version, views)) totalBytes -= views.bytes;
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(json);
+        }
+        return out.toByteArray();
+    }
+
+    /** JSON décompressé (client qui n'accepte pas gzip). */
+    public static byte[] gunzip(byte[] gzip) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Versions et vues en mémoire, calculs en attente, réponses servies depuis les vues. */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("versions", versions.size());
+        stats.put("complete", versions.values().stream().filter(v -> v.complete).count());
+        stats.put("views", versions.values().stream().mapToInt(v -> v.gzip.size()).sum());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxMemory.toBytes());
+        stats.put("pending", pending.get());
+        stats.put("materialized", materialized.get());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
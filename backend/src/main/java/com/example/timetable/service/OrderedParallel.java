@@ -0,0 +1,74 @@
+package com.example.timetable.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Calcul en parallèle d'une liste d'éléments, résultats remis dans l'ordre de la liste : seule une
+ * fenêtre de calculs d'avance est en mémoire, quel que soit le nombre d'éléments. Utilisé par les
+ * exports en lot (PDF sur le pool de {@link PdfBatchRenderer}, NDJSON sur celui de {@link JsonBatchExporter}).
+ */
+public final class OrderedParallel {
+
+    /** Reçoit chaque résultat (null si le calcul de l'élément a échoué). */
+    @FunctionalInterface
+    public interface Sink<T, R> {
+        void accept(T item, R result) throws IOException;
+    }
+
+    private record Computed<T, R>(T item, R result) {
+    }
+
+    private OrderedParallel() {
+    }
+
+    /**
+     * Calcule les éléments sur {@code executor} (au plus {@code window} d'avance) et les remet à
+     * {@code sink} dans l'ordre de la liste, sur le thread appelant. Un calcul en échec est journalisé
+     * et remis comme null ; une erreur du sink (client déconnecté) annule les calculs restants.
+     */
+    public static <T, R> void forEachInOrder(ExecutorService executor, int window, List<T> items,
+                                             Function<T, R> compute, Sink<T, R> sink) throws IOException {
+        Deque<Future<Computed<T, R>>> pending = new ArrayDeque<>();
+        int size = Math.max(1, window);
+        int next = 0;
+        try {
+            while (next < items.size() && pending.size() < size) {
+                pending.add(executor.submit(task(items.get(next++), compute)));
+            }
+            while (!pending.isEmpty()) {
+                Computed<T, R> computed = pending.peek().get();
+                pending.poll();
+                if (next < items.size()) {
+                    pending.add(executor.submit(task(items.get(next++), compute)));
+                }
+                sink.accept(computed.item(), computed.result());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<Computed<T, R>> f : pending) f.cancel(true);
+        }
+    }
+
+    private static <T, R> Callable<Computed<T, R>> task(T item, Function<T, R> compute) {
+        return () -> {
+            try {
+                return new Computed<>(item, compute.apply(item));
+            } catch (RuntimeException e) {
+                System.err.println("⚠ Erreur calcul (" + item + "): " + e.getMessage());
+                return new Computed<>(item, null);
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.timetable.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Rendu de PDF en lot sur un pool de threads borné, partagé par tous les exports PDF.
+ *
+ * Un export ne garde qu'une petite fenêtre de PDF en cours (rendus ou en attente d'écriture) :
+ * la mémoire reste bornée quel que soit le nombre de documents.
+ */
+@Service
+public class PdfBatchRenderer {
+
+    @Value("${timetable.pdf.threads:4}")
+    private int threads = 4;
+
+    private ExecutorService pool;
+
+    /** Reçoit chaque PDF rendu (null si le rendu a échoué). */
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T item, byte[] pdf) throws IOException;
+    }
+
+    private record Rendered<T>(T item, byte[] pdf) {
+    }
+
+    @PostConstruct
+    void start() {
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "pdf-renderer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Rend tous les éléments en parallèle et les remet à {@code sink} dans l'ordre où ils se terminent
+     * (sur le thread appelant). Une erreur du sink (client déconnecté) annule les rendus restants.
+     */
+    public <T> void renderAsCompleted(List<T> items, Function<T, byte[]> renderer, Sink<T> sink) throws IOException {
+        CompletionService<Rendered<T>> completion = new ExecutorCompletionService<>(pool);
+        List<Future<Rendered<T>>> futures = new ArrayList<>();
+        int window = 2 * Math.max(1, threads);
+        int next = 0, pending = 0;
+        try {
+            while (next < items.size() && pending < window) {
+                futures.add(completion.submit(task(items.get(next++), renderer)));
+                pending++;
+            }
+            while (pending > 0) {
+                Rendered<T> rendered = completion.take().get();
+                pending--;
+                if (next < items.size()) {
+                    futures.add(completion.submit(task(items.get(next++), renderer)));
+                    pending++;
+                }
+                sink.accept(rendered.item(), rendered.pdf());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export PDF interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<Rendered<T>> f : futures) f.cancel(true);
+        }
+    }
+
+    /**
+     * Rend tous les éléments en parallèle et les remet à {@code sink} dans l'ordre de la liste
+     * (sur le thread appelant) ; les rendus d'avance sont limités à la fenêtre.
+     */
+    public <T> void renderInOrder(List<T> items, Function<T, byte[]> renderer, Sink<T> sink) throws IOException {
+        OrderedParallel.forEachInOrder(pool, 2 * Math.max(1, threads), items, renderer, sink::accept);
+    }
+
+    /**
+     * Calcule les éléments en parallèle sur le pool de rendu et les remet à {@code sink} dans l'ordre
+     * de la liste (sur le thread appelant, null si le calcul a échoué) : le sink peut alors écrire tous
+     * les éléments dans un seul document.
+     */
+    public <T, R> void computeInOrder(List<T> items, Function<T, R> compute, OrderedParallel.Sink<T, R> sink) throws IOException {
+        OrderedParallel.forEachInOrder(pool, 2 * Math.max(1, threads), items, compute, sink);
+    }
+
+    private static <T> Callable<Rendered<T>> task(T item, Function<T, byte[]> renderer) {
+        return () -> {
+            try {
+                return new Rendered<>(item, renderer.apply(item));
+            } catch (RuntimeException e) {
+                System.err.println("⚠ Erreur rendu PDF (" + item + "): " + e.getMessage());
+                return new Rendered<>(item, null);
+            }
+        };
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.timetable.service;
+
+import com.example.timetable.model.SessionSnapshot;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des PDF rendus, borné en octets, du moins récemment utilisé au plus récent.
+ *
+ * La clé contient le jeu de données (empreinte des fichiers) et la version des renommages :
+ * un upload ou un renommage change la clé, les anciens PDF ne sont plus demandés et sortent
+ * du cache d'eux-mêmes. Deux sessions avec les mêmes fichiers et renommages partagent leurs PDF.
+ *
+ * Les PDF retirés de la mémoire sont écrits dans data/pdf-cache (budget disque séparé)
+ * et relus depuis le fichier au prochain accès.
+ */
+@Service
+public class PdfCache {
+
+    private static final Path CACHE_DIR = Paths.get("data", "pdf-cache");
+
+    /** Identité d'un PDF : jeu de données, type ("teacher", "subgroup"...), nom, options d'affichage, renommages. */
+    public record Key(String dataset, String type, String name, String options, String mappings) {
+
+        public static Key of(SessionSnapshot snapshot, String type, String name, String options) {
+            return new Key(snapshot.datasetKey().id(), type, name, options == null ? "" : options, snapshot.mappingsVersion());
+        }
+
+        private String fileName() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                String content = String.join("\u0001", dataset, type, name, options, mappings);
+                return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8))) + ".pdf";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // Ordre d'accès : le premier élément est le moins récemment utilisé
+    private final LinkedHashMap<Key, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Value("${timetable.pdf.cache.max-memory:64MB}")
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+    @Value("${timetable.pdf.cache.max-disk:256MB}")
+    private DataSize maxDisk = DataSize.ofMegabytes(256);
+
+    @PostConstruct
+    void start() {
+        // Les fichiers d'un démarrage précédent ne sont pas indexés : repartir d'un dossier vide
+        try {
+            if (Files.isDirectory(CACHE_DIR)) {
+                try (var files = Files.list(CACHE_DIR)) {
+                    for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠ Nettoyage du cache PDF impossible: " + e.getMessage());
+        }
+    }
+
+    /**
+     * PDF en cache (mémoire, sinon disque), ou null.
+     */
+    public byte[] get(Key key) {
+        synchronized (this) {
+            byte[] pdf = memory.get(key);
+            if (pdf != null) {
+                hits.incrementAndGet();
+                return pdf;
+            }
+            if (!disk.containsKey(key)) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        try {
+            byte[] pdf = Files.readAllBytes(CACHE_DIR.resolve(key.fileName()));
+            diskHits.incrementAndGet();
+            return pdf;
+        } catch (IOException e) {
+            // Retiré du disque entre-temps
+            synchronized (this) {
+                Long size = disk.remove(key);
+                if (size != null) diskBytes -= size;
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /** Taille maximale d'un PDF mis en cache : au-delà, {@link #put} l'ignore. */
+    public long maxEntryBytes() {
+        return maxMemory.toBytes();
+    }
+
+    public void put(Key key, byte[] pdf) {
+        if (pdf.length > maxMemory.toBytes()) return;
+        Map<Key, byte[]> spilled = new LinkedHashMap<>();
+        synchronized (this) {
+            byte[] previous = memory.put(key, pdf);
+            if (previous != null) memoryBytes -= previous.length;
+            memoryBytes += pdf.length;
+            Iterator<Map.Entry<Key, byte[]>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxMemory.toBytes() && it.hasNext()) {
+                Map.Entry<Key, byte[]> eldest = it.next();
+                if (eldest.getKey().equals(key)) continue;
+                it.remove();
+                memoryBytes -= eldest.getValue().length;
+                evictions.incrementAndGet();
+                if (!disk.containsKey(eldest.getKey())) spilled.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+        // Écriture disque hors verrou
+        spilled.forEach(this::spill);
+    }
+
+    private void spill(Key key, byte[] pdf) {
+        if (pdf.length > maxDisk.toBytes()) return;
+        try {
+            Files.createDirectories(CACHE_DIR);
+            Path file = CACHE_DIR.resolve(key.fileName());
+            Path tmp = Files.createTempFile(CACHE_DIR, "pdf-", ".tmp");
+            Files.write(tmp, pdf);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("⚠ PDF non écrit dans le cache disque: " + e.getMessage());
+            return;
+        }
+        Map<Key, Long> removed = new LinkedHashMap<>();
+        synchronized (this) {
+            Long previous = disk.put(key, (long) pdf.length);
+            if (previous != null) diskBytes -= previous;
+            diskBytes += pdf.length;
+            Iterator<Map.Entry<Key, Long>> it = disk.entrySet().iterator();
+            while (diskBytes > maxDisk.toBytes() && it.hasNext()) {
+                Map.Entry<Key, Long> eldest = it.next();
+                if (eldest.getKey().equals(key)) continue;
+                it.remove();
+                diskBytes -= eldest.getValue();
+                removed.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+        for (Key k : removed.keySet()) {
+            try {
+                Files.deleteIfExists(CACHE_DIR.resolve(k.fileName()));
+            } catch (IOException e) {
+                System.err.println("⚠ Fichier du cache PDF non supprimé: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Compteurs et occupation du cache. */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", memory.size());
+        stats.put("bytes", memoryBytes);
+        stats.put("maxBytes", maxMemory.toBytes());
+        stats.put("diskEntries", disk.size());
+        stats.put("diskBytes", diskBytes);
+        stats.put("maxDiskBytes", maxDisk.toBytes());
+        stats.put("hits", hits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
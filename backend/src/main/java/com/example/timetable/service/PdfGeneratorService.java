@@ -1,5 +1,7 @@
 package com.example.timetable.service;
 
+import com.example.timetable.dto.SlotDto;
+import com.example.timetable.model.SlotCodec;
 import com.itextpdf.io.font.FontProgram;
 import com.itextpdf.io.font.FontProgramFactory;
 import com.itextpdf.io.font.constants.StandardFonts;
@@ -8,140 +10,308 @@ import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.font.PdfFontFactory;
 
 import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
 import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
 import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Image;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.AreaBreakType;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
 import com.itextpdf.layout.properties.VerticalAlignment;
 // import com.itextpdf.licensekey.LicenseKey; // Pas nécessaire pour version Community
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class PdfGeneratorService {
 
-    private static final String[] DAYS = {"Lundi", "Mardi", "Mercredi", "Jeudi", "Vendredi", "Samedi"};
-    private static final String[] TIMESLOTS = {
-        "08:30 - 09:30", "09:30 - 10:30", "10:30 - 11:30", "11:30 - 12:30",
-        "14:30 - 15:30", "15:30 - 16:30", "16:30 - 17:30", "17:30 - 18:30"
+    private static final List<String> DAYS = SlotCodec.DAYS;
+
+    // Grille horaire : lignes prédéfinies des tableaux et ordre des créneaux
+    @Autowired
+    private SlotCodec slotCodec = SlotCodec.DEFAULT;
+
+    // Polices avec support arabe : dans le jar (src/main/resources/fonts), puis polices système
+    private static final String[] CLASSPATH_FONTS = {
+        "fonts/NotoNaskhArabic-Regular.ttf",
+        "fonts/Amiri-Regular.ttf",
+        "fonts/Cairo-Regular.ttf"
+    };
+    private static final String[] SYSTEM_FONTS = {
+        "/usr/share/fonts/truetype/noto/NotoNaskhArabic-Regular.ttf",
+        "/usr/share/fonts/truetype/noto/NotoSansArabic-Regular.ttf",
+        "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+        "c:/windows/fonts/tahoma.ttf",
+        "c:/windows/fonts/arial.ttf",
+        "c:/windows/fonts/calibri.ttf",
+        "c:/windows/fonts/segoeui.ttf",
+        "c:/windows/fonts/times.ttf"
     };
 
-    private PdfFont arabicFont;
-    private PdfFont regularFont;
-    private PdfFont boldFont;
+    /**
+     * Programme de police (glyphes et métriques, lu une seule fois, en lecture seule) partagé par
+     * tous les documents ; null si aucune police n'a été trouvée (Helvetica, sans l'arabe).
+     * Un {@link PdfFont} appartient à un seul PdfDocument : chaque document crée le sien via {@link #documentFont()}.
+     */
+    private final FontProgram fontProgram;
+
+    private static final String[] OFFICIAL_HEADER = {
+        "المملكة المغربية",
+        "وزارة التربية الوطنية والتعليم الأولي والرياضة",
+        "الأكاديمية الجهوية للتربية والتكوين",
+        "مديرية الفقيه بن صالح",
+        "المؤسسة التعليمية"
+    };
+
+    /**
+     * Bloc pré-rendu : flux de contenu (opérateurs de dessin déjà positionnés), taille du bloc et nom
+     * de la police dans les ressources du flux.
+     */
+    private record Template(byte[] content, float width, float height, PdfName fontName) { }
+
+    /**
+     * En-tête officiel (identique pour tous les documents) mis en page une seule fois au démarrage ;
+     * chaque document le dessine comme form XObject avec sa propre police au lieu de refaire la mise
+     * en page du texte. null si le rendu a échoué (l'en-tête est alors mis en page à chaque document).
+     */
+    private final Template officialHeaderTemplate;
 
     public PdfGeneratorService() {
+        this(true);
+    }
+
+    /** {@code headerTemplate} false : en-tête mis en page à chaque document (mesures de PdfHeaderBenchmark). */
+    PdfGeneratorService(boolean headerTemplate) {
+        FontProgram program = null;
         try {
             // Charger les polices avec support arabe
-            loadFonts();
+            program = loadFontProgram();
         } catch (Exception e) {
             System.err.println("⚠ Erreur chargement polices: " + e.getMessage());
             e.printStackTrace();
         }
+        fontProgram = program;
+
+        Template template = null;
+        try {
+            if (headerTemplate) template = renderOfficialHeaderTemplate();
+        } catch (Exception e) {
+            System.err.println("⚠ Modèle d'en-tête PDF non rendu: " + e.getMessage());
+        }
+        officialHeaderTemplate = template;
     }
 
-    private void loadFonts() throws Exception {
-        // Pour l'arabe, nous devons utiliser IDENTITY_H et forcer l'embedding
-        String[] arabicFontPaths = {
-            "c:/windows/fonts/tahoma.ttf",
-            "c:/windows/fonts/arial.ttf", 
-            "c:/windows/fonts/calibri.ttf",
-            "c:/windows/fonts/segoeui.ttf",
-            "c:/windows/fonts/times.ttf"
-        };
-
-        arabicFont = null;
-        for (String fontPath : arabicFontPaths) {
+    /** Une police Unicode (arabe) a été trouvée : les PDF l'embarquent en Identity-H. */
+    boolean hasUnicodeFont() {
+        return fontProgram != null;
+    }
+
+    private FontProgram loadFontProgram() throws Exception {
+        for (String resource : CLASSPATH_FONTS) {
+            try (InputStream in = PdfGeneratorService.class.getClassLoader().getResourceAsStream(resource)) {
+                if (in == null) continue;
+                FontProgram program = FontProgramFactory.createFont(in.readAllBytes(), false);
+                System.out.println("✓ Police arabe chargée: " + resource);
+                return program;
+            } catch (Exception e) {
+                System.out.println("⚠ Échec chargement police: " + resource + " (" + e.getMessage() + ")");
+            }
+        }
+        for (String fontPath : SYSTEM_FONTS) {
             try {
                 File fontFile = new File(fontPath);
                 if (fontFile.exists()) {
-                    // CRITIQUE : Utiliser "Identity-H" et forcer l'embedding pour l'arabe
-                    arabicFont = PdfFontFactory.createFont(fontPath, 
-                        "Identity-H", 
-                        PdfFontFactory.EmbeddingStrategy.FORCE_EMBEDDED);
-                    System.out.println("✓ Police arabe chargée avec IDENTITY_H: " + fontPath);
-                    break;
+                    FontProgram program = FontProgramFactory.createFont(Files.readAllBytes(fontFile.toPath()), false);
+                    System.out.println("✓ Police arabe chargée: " + fontPath);
+                    return program;
                 }
             } catch (Exception e) {
                 System.out.println("⚠ Échec chargement police: " + fontPath + " (" + e.getMessage() + ")");
             }
         }
+        System.out.println("❌ Aucune police trouvée - Helvetica, l'arabe ne s'affichera pas");
+        return null;
+    }
 
-        // Si aucune police système n'a fonctionné, essayer une approche alternative
-        if (arabicFont == null) {
-            try {
-                // Utiliser une police standard avec encodage Unicode
-                arabicFont = PdfFontFactory.createFont(StandardFonts.HELVETICA, "Identity-H");
-                System.out.println("⚠ Utilisation de Helvetica avec IDENTITY_H");
-            } catch (Exception e) {
-                // Dernier recours - sans Unicode (l'arabe ne fonctionnera pas)
-                arabicFont = PdfFontFactory.createFont(StandardFonts.HELVETICA);
-                System.out.println("❌ Police de base - l'arabe ne s'affichera pas");
-            }
+    /**
+     * Police d'un document : instance propre au PdfDocument, créée à partir du programme partagé
+     * (pas de relecture du fichier TTF). CRITIQUE : "Identity-H" et embedding forcé pour l'arabe.
+     */
+    private PdfFont documentFont() throws Exception {
+        if (fontProgram == null) {
+            return PdfFontFactory.createFont(StandardFonts.HELVETICA);
+        }
+        return PdfFontFactory.createFont(fontProgram, "Identity-H", PdfFontFactory.EmbeddingStrategy.FORCE_EMBEDDED);
+    }
+
+    private Paragraph officialHeader(PdfFont font) {
+        Paragraph header = new Paragraph();
+        for (String line : OFFICIAL_HEADER) {
+            header.add(line + "\n");
         }
+        return header
+            .setFont(font)
+            .setFontSize(12)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setBold();
+    }
 
-        // IMPORTANT : Utiliser la même police pour tout pour assurer le rendu arabe
-        regularFont = arabicFont;
-        boldFont = arabicFont;
+    /**
+     * Met l'en-tête officiel en page sur la largeur utile d'une page A4 paysage (marges de 20) et
+     * garde le flux de contenu de la page, ramené à l'origine du bloc (marges du paragraphe comprises).
+     * Les codes de glyphes du flux sont ceux du programme de police partagé : ils restent valables
+     * avec la police de chaque document.
+     */
+    private Template renderOfficialHeaderTemplate() throws Exception {
+        PageSize landscape = PageSize.A4.rotate();
+        float width = landscape.getWidth() - 40;
+        float height = landscape.getHeight();
+        PdfDocument pdfDoc = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        Document document = new Document(pdfDoc, new PageSize(width, height));
+        document.setMargins(0, 0, 0, 0);
+        document.add(officialHeader(documentFont()));
+        float used = height - document.getRenderer().getCurrentArea().getBBox().getTop();
+
+        PdfPage page = pdfDoc.getFirstPage();
+        PdfName fontName = page.getResources().getResourceNames(PdfName.Font).iterator().next();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(("q 1 0 0 1 0 " + (used - height) + " cm\n").getBytes(StandardCharsets.US_ASCII));
+        content.write(page.getContentBytes());
+        content.write("\nQ".getBytes(StandardCharsets.US_ASCII));
+        document.close();
+        return new Template(content.toByteArray(), width, used, fontName);
     }
 
-    public byte[] generateTimetablePdf(String title, List<Map<String, Object>> timetableData, String type) {
+    /**
+     * Form XObject de l'en-tête pour ce document, ou null si le nom de police attribué ne correspond pas
+     * au flux pré-rendu. Les glyphes sont déclarés utilisés pour être inclus dans le sous-ensemble embarqué.
+     */
+    private PdfFormXObject officialHeaderXObject(PdfDocument pdfDoc, PdfFont font) {
+        Template template = officialHeaderTemplate;
+        PdfFormXObject header = new PdfFormXObject(new Rectangle(template.width(), template.height()));
+        if (!template.fontName().equals(header.getResources().addFont(pdfDoc, font))) {
+            return null;
+        }
+        header.getPdfObject().setData(template.content());
+        for (String line : OFFICIAL_HEADER) {
+            font.convertToBytes(line);
+        }
+        return header;
+    }
+
+    public byte[] generateTimetablePdf(String title, List<SlotDto> timetableData, String type) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            PdfWriter writer = new PdfWriter(baos);
-            PdfDocument pdfDoc = new PdfDocument(writer);
-            
+            writeTimetablePdf(title, timetableData, type, baos);
+            return baos.toByteArray();
+
+        } catch (Exception e) {
+            System.err.println("⚠ Erreur génération PDF: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Écrit le PDF directement dans {@code out} (réponse HTTP), sans le garder en mémoire ;
+     * le flux n'est pas fermé.
+     */
+    public void writeTimetablePdf(String title, List<SlotDto> timetableData, String type,
+                                  OutputStream out) throws Exception {
+        Booklet booklet = openBooklet(out);
+        booklet.add(title, timetableData, type);
+        booklet.close();
+    }
+
+    /**
+     * Document de plusieurs emplois du temps (chacun commence sur une nouvelle page) écrit au fil de l'eau
+     * dans le flux : une seule police embarquée, dont le sous-ensemble couvre tous les emplois du temps,
+     * et un seul en-tête officiel partagé par toutes les pages. Les pages terminées sont écrites et
+     * libérées au fur et à mesure. À utiliser depuis un seul thread.
+     */
+    public final class Booklet implements AutoCloseable {
+        private final PdfDocument pdfDoc;
+        private final Document document;
+        private final PdfFont font;
+        private final PdfFormXObject header;
+        private int timetables;
+
+        private Booklet(OutputStream out) throws Exception {
+            PdfWriter writer = new PdfWriter(out);
+            // Le flux appartient à l'appelant (réponse HTTP) : ne pas le fermer
+            writer.setCloseStream(false);
+            pdfDoc = new PdfDocument(writer);
+
             // Format paysage A4
             pdfDoc.setDefaultPageSize(PageSize.A4.rotate());
-            
-            Document document = new Document(pdfDoc);
+
+            document = new Document(pdfDoc);
             document.setMargins(20, 20, 20, 20);
+            font = documentFont();
+            // Logo et en-tête officiel : bloc pré-rendu importé tel quel (mise en page faite au démarrage)
+            header = officialHeaderTemplate != null ? officialHeaderXObject(pdfDoc, font) : null;
+        }
+
+        /** Ajoute l'emploi du temps {@code title} ("teacher" ou "subgroup") à partir d'une nouvelle page. */
+        public void add(String title, List<SlotDto> timetableData, String type) throws Exception {
+            if (timetables++ > 0) {
+                document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
+            }
 
             // En-tête officiel
-            addOfficialHeader(document, title, type);
+            addOfficialHeader(document, font, header, title, type);
 
             // Créer le tableau principal
-            Table mainTable = createTimetableTable(timetableData);
+            Table mainTable = createTimetableTable(timetableData, font);
             document.add(mainTable);
 
             // Pied de page si nécessaire
             if ("teacher".equals(type)) {
-                addTeacherFooter(document, timetableData);
+                addTeacherFooter(document, font, timetableData);
             }
+        }
 
-            document.close();
-            return baos.toByteArray();
+        public int pages() {
+            return pdfDoc.getNumberOfPages();
+        }
 
-        } catch (Exception e) {
-            System.err.println("⚠ Erreur génération PDF: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+        @Override
+        public void close() {
+            // Un PDF doit contenir au moins une page
+            if (pdfDoc.getNumberOfPages() == 0) pdfDoc.addNewPage();
+            document.close();
         }
     }
 
-    private void addOfficialHeader(Document document, String title, String type) throws Exception {
-        // Logo et en-tête officiel
-        Paragraph header = new Paragraph()
-            .add("المملكة المغربية\n")
-            .add("وزارة التربية الوطنية والتعليم الأولي والرياضة\n")
-            .add("الأكاديمية الجهوية للتربية والتكوين\n")
-            .add("مديرية الفقيه بن صالح\n")
-            .add("المؤسسة التعليمية\n")
-            .setFont(arabicFont)
-            .setFontSize(12)
-            .setTextAlignment(TextAlignment.CENTER)
-            .setBold();
+    /** Ouvre un {@link Booklet} écrit dans {@code out} (le flux n'est pas fermé). */
+    public Booklet openBooklet(OutputStream out) throws Exception {
+        return new Booklet(out);
+    }
 
-        document.add(header);
+    private void addOfficialHeader(Document document, PdfFont font, PdfFormXObject header,
+                                   String title, String type) throws Exception {
+        if (header != null) {
+            document.add(new Image(header));
+        } else {
+            document.add(officialHeader(font));
+        }
 
         // Titre principal
         String titleText = "teacher".equals(type) ? 
@@ -149,7 +319,7 @@ public class PdfGeneratorService {
             "جدول الحصص - القسم: " + title;
 
         Paragraph titlePara = new Paragraph(titleText)
-            .setFont(arabicFont)
+            .setFont(font)
             .setFontSize(16)
             .setTextAlignment(TextAlignment.CENTER)
             .setBold()
@@ -158,42 +328,43 @@ public class PdfGeneratorService {
         document.add(titlePara);
     }
 
-    private Table createTimetableTable(List<Map<String, Object>> timetableData) throws Exception {
+    private Table createTimetableTable(List<SlotDto> timetableData, PdfFont font) throws Exception {
         // Créer tableau : 1 colonne pour l'heure + 6 colonnes pour les jours
         Table table = new Table(UnitValue.createPercentArray(new float[]{15, 14, 14, 14, 14, 14, 15}));
         table.setWidth(UnitValue.createPercentValue(100));
 
         // En-tête du tableau
-        addTableHeader(table);
+        addTableHeader(table, font);
 
         // Organiser les données par créneau horaire
         Map<String, Map<String, String>> schedule = organizeByTimeslot(timetableData);
 
-        // Trier les créneaux horaires pour un affichage cohérent
-        java.util.List<String> sortedTimeslots = new java.util.ArrayList<>(schedule.keySet());
-        sortedTimeslots.sort((t1, t2) -> {
-            // Extraire l'heure de début pour le tri
-            try {
-                String time1 = t1.split(" - ")[0].replace(":", "");
-                String time2 = t2.split(" - ")[0].replace(":", "");
-                return time1.compareTo(time2);
-            } catch (Exception e) {
-                return t1.compareTo(t2);
+        // Trier les créneaux horaires pour un affichage cohérent : rang de la première heure dans la journée
+        // (une plage fusionnée suit l'heure simple qui commence au même moment), créneaux hors grille à la fin
+        Map<String, Integer> rows = new java.util.HashMap<>();
+        List<String> dayTimeslots = slotCodec.dayTimeslots();
+        for (int row = 0; row < dayTimeslots.size(); row++) rows.put(dayTimeslots.get(row), row);
+        for (SlotDto slot : timetableData) {
+            if (slot.first() != SlotCodec.NONE && slot.timeslot() != null) {
+                rows.putIfAbsent(slot.timeslot().trim(), slotCodec.rowInDay(slot.first()));
             }
-        });
+        }
+        java.util.List<String> sortedTimeslots = new java.util.ArrayList<>(schedule.keySet());
+        sortedTimeslots.sort(java.util.Comparator.comparingInt((String t) -> rows.getOrDefault(t, Integer.MAX_VALUE))
+            .thenComparing(java.util.Comparator.naturalOrder()));
 
         // Ajouter les lignes pour chaque créneau
         for (String timeslot : sortedTimeslots) {
-            addTimeslotRow(table, timeslot, schedule.get(timeslot));
+            addTimeslotRow(table, font, timeslot, schedule.get(timeslot));
         }
 
         return table;
     }
 
-    private void addTableHeader(Table table) throws Exception {
+    private void addTableHeader(Table table, PdfFont font) throws Exception {
         // Cellule vide pour l'intersection
         Cell timeHeader = new Cell()
-            .add(new Paragraph("الوقت / الأيام").setFont(arabicFont).setFontSize(10))
+            .add(new Paragraph("الوقت / الأيام").setFont(font).setFontSize(10))
             .setTextAlignment(TextAlignment.CENTER)
             .setVerticalAlignment(VerticalAlignment.MIDDLE)
             .setBackgroundColor(ColorConstants.LIGHT_GRAY)
@@ -204,7 +375,7 @@ public class PdfGeneratorService {
         String[] arabicDays = {"الاثنين", "الثلاثاء", "الأربعاء", "الخميس", "الجمعة", "السبت"};
         for (String day : arabicDays) {
             Cell dayHeader = new Cell()
-                .add(new Paragraph(day).setFont(arabicFont).setFontSize(10))
+                .add(new Paragraph(day).setFont(font).setFontSize(10))
                 .setTextAlignment(TextAlignment.CENTER)
                 .setVerticalAlignment(VerticalAlignment.MIDDLE)
                 .setBackgroundColor(ColorConstants.LIGHT_GRAY)
@@ -213,20 +384,20 @@ public class PdfGeneratorService {
         }
     }
 
-    private Map<String, Map<String, String>> organizeByTimeslot(List<Map<String, Object>> timetableData) {
+    private Map<String, Map<String, String>> organizeByTimeslot(List<SlotDto> timetableData) {
         Map<String, Map<String, String>> schedule = new java.util.HashMap<>();
         
         // Collecter tous les créneaux uniques des données réelles
         java.util.Set<String> allTimeslots = new java.util.HashSet<>();
-        for (Map<String, Object> slot : timetableData) {
-            String timeslot = (String) slot.get("timeslot");
+        for (SlotDto slot : timetableData) {
+            String timeslot = slot.timeslot();
             if (timeslot != null && !timeslot.trim().isEmpty()) {
                 allTimeslots.add(timeslot.trim());
             }
         }
         
         // Ajouter les créneaux prédéfinis s'ils ne sont pas déjà présents
-        for (String timeslot : TIMESLOTS) {
+        for (String timeslot : slotCodec.dayTimeslots()) {
             allTimeslots.add(timeslot);
         }
         
@@ -239,13 +410,13 @@ public class PdfGeneratorService {
         }
 
         // Remplir avec les données réelles
-        for (Map<String, Object> slot : timetableData) {
-            String timeslot = (String) slot.get("timeslot");
-            String day = (String) slot.get("day");
-            String subject = (String) slot.get("subject");
-            String teacher = (String) slot.get("teacher");
-            String subgroup = (String) slot.get("subgroup");
-            String room = (String) slot.get("room");
+        for (SlotDto slot : timetableData) {
+            String timeslot = slot.timeslot();
+            String day = slot.day();
+            String subject = slot.subject();
+            String teacher = slot.teacher();
+            String subgroup = slot.subgroup();
+            String room = slot.room();
 
             if (timeslot != null && day != null && !timeslot.trim().isEmpty() && !day.trim().isEmpty()) {
                 // S'assurer que le créneau existe dans le schedule
@@ -277,10 +448,10 @@ public class PdfGeneratorService {
         return schedule;
     }
 
-    private void addTimeslotRow(Table table, String timeslot, Map<String, String> dayData) throws Exception {
+    private void addTimeslotRow(Table table, PdfFont font, String timeslot, Map<String, String> dayData) throws Exception {
         // Cellule de l'heure
         Cell timeCell = new Cell()
-            .add(new Paragraph(timeslot).setFont(regularFont).setFontSize(9))
+            .add(new Paragraph(timeslot).setFont(font).setFontSize(9))
             .setTextAlignment(TextAlignment.CENTER)
             .setVerticalAlignment(VerticalAlignment.MIDDLE)
             .setBackgroundColor(ColorConstants.LIGHT_GRAY);
@@ -297,7 +468,7 @@ public class PdfGeneratorService {
 
             if (!content.isEmpty()) {
                 Paragraph para = new Paragraph(content)
-                    .setFont(arabicFont)
+                    .setFont(font)
                     .setFontSize(8)
                     .setTextAlignment(TextAlignment.CENTER);
                 dayCell.add(para);
@@ -307,11 +478,11 @@ public class PdfGeneratorService {
         }
     }
 
-    private void addTeacherFooter(Document document, List<Map<String, Object>> timetableData) throws Exception {
+    private void addTeacherFooter(Document document, PdfFont font, List<SlotDto> timetableData) throws Exception {
         // Extraire les classes enseignées
         java.util.Set<String> classes = new java.util.LinkedHashSet<>();
-        for (Map<String, Object> slot : timetableData) {
-            String subgroup = (String) slot.get("subgroup");
+        for (SlotDto slot : timetableData) {
+            String subgroup = slot.subgroup();
             if (subgroup != null && !subgroup.trim().isEmpty()) {
                 classes.add(subgroup.trim());
             }
@@ -319,7 +490,7 @@ public class PdfGeneratorService {
 
         if (!classes.isEmpty()) {
             Paragraph classesPara = new Paragraph("\nالأقسام المدرسة: " + String.join(", ", classes))
-                .setFont(arabicFont)
+                .setFont(font)
                 .setFontSize(10)
                 .setMarginTop(20);
             document.add(classesPara);
@@ -327,67 +498,82 @@ public class PdfGeneratorService {
 
         // Signature
         Paragraph signature = new Paragraph("\n\nتوقيع الإدارة: ___________________")
-            .setFont(arabicFont)
+            .setFont(font)
             .setFontSize(10)
             .setTextAlignment(TextAlignment.RIGHT)
             .setMarginTop(20);
         document.add(signature);
     }
 
-    public byte[] generateVacantRoomsPdf(List<Map<String, Object>> vacantData) {
+    public byte[] generateVacantRoomsPdf(List<SlotDto> vacantData) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            PdfWriter writer = new PdfWriter(baos);
-            PdfDocument pdfDoc = new PdfDocument(writer);
-            pdfDoc.setDefaultPageSize(PageSize.A4.rotate());
-            
-            Document document = new Document(pdfDoc);
-            document.setMargins(20, 20, 20, 20);
+            writeVacantRoomsPdf(vacantData, baos);
+            return baos.toByteArray();
+        } catch (Exception e) {
+            System.err.println("⚠ Erreur génération PDF salles vacantes: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            // En-tête
-            Paragraph header = new Paragraph("القاعات الفارغة - جدول التوقيتات")
-                .setFont(arabicFont)
-                .setFontSize(16)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setBold()
-                .setMarginBottom(20);
-            document.add(header);
-
-            // Organiser les données par créneau
-            Map<String, java.util.Set<String>> vacantBySlot = new java.util.HashMap<>();
-            for (Map<String, Object> slot : vacantData) {
-                String timeslot = (String) slot.get("timeslot");
-                String day = (String) slot.get("day");
-                String room = (String) slot.get("subgroup"); // Le nom de la salle est dans subgroup
-                
-                if (timeslot != null && day != null && room != null) {
-                    String key = day + " - " + timeslot;
-                    vacantBySlot.computeIfAbsent(key, k -> new java.util.LinkedHashSet<>()).add(room);
-                }
+    /**
+     * Écrit le PDF des salles vacantes directement dans {@code out} ; le flux n'est pas fermé.
+     */
+    public void writeVacantRoomsPdf(List<SlotDto> vacantData, OutputStream out) throws Exception {
+        PdfWriter writer = new PdfWriter(out);
+        writer.setCloseStream(false);
+        PdfDocument pdfDoc = new PdfDocument(writer);
+        pdfDoc.setDefaultPageSize(PageSize.A4.rotate());
+
+        Document document = new Document(pdfDoc);
+        document.setMargins(20, 20, 20, 20);
+        PdfFont font = documentFont();
+
+        // En-tête
+        Paragraph header = new Paragraph("القاعات الفارغة - جدول التوقيتات")
+            .setFont(font)
+            .setFontSize(16)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setBold()
+            .setMarginBottom(20);
+        document.add(header);
+
+        // Organiser les données par créneau, dans l'ordre chronologique (ordinaux de la grille horaire)
+        List<SlotDto> chronological = new java.util.ArrayList<>(vacantData);
+        chronological.sort(SlotDto.CHRONOLOGICAL);
+        Map<String, java.util.Set<String>> vacantBySlot = new java.util.LinkedHashMap<>();
+        for (SlotDto slot : chronological) {
+            String timeslot = slot.timeslot();
+            String day = slot.day();
+            String room = slot.subgroup(); // Le nom de la salle est dans subgroup
+
+            if (timeslot != null && day != null && room != null) {
+                String key = day + " - " + timeslot;
+                vacantBySlot.computeIfAbsent(key, k -> new java.util.LinkedHashSet<>()).add(room);
             }
+        }
 
-            // Créer le tableau des salles vacantes
-            Table vacantTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}));
-            vacantTable.setWidth(UnitValue.createPercentValue(100));
+        // Créer le tableau des salles vacantes (mode "grand tableau" : les pages terminées partent
+        // dans le flux au fur et à mesure au lieu d'attendre la fin du tableau)
+        Table vacantTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}), true);
+        vacantTable.setWidth(UnitValue.createPercentValue(100));
 
-            // En-têtes
-            vacantTable.addHeaderCell(new Cell().add(new Paragraph("اليوم والوقت").setFont(arabicFont).setFontSize(10)).setBackgroundColor(ColorConstants.LIGHT_GRAY).setBold());
-            vacantTable.addHeaderCell(new Cell().add(new Paragraph("القاعات الفارغة").setFont(arabicFont).setFontSize(10)).setBackgroundColor(ColorConstants.LIGHT_GRAY).setBold());
+        // En-têtes
+        vacantTable.addHeaderCell(new Cell().add(new Paragraph("اليوم والوقت").setFont(font).setFontSize(10)).setBackgroundColor(ColorConstants.LIGHT_GRAY).setBold());
+        vacantTable.addHeaderCell(new Cell().add(new Paragraph("القاعات الفارغة").setFont(font).setFontSize(10)).setBackgroundColor(ColorConstants.LIGHT_GRAY).setBold());
 
-            // Ajouter les données
-            for (Map.Entry<String, java.util.Set<String>> entry : vacantBySlot.entrySet()) {
-                vacantTable.addCell(new Cell().add(new Paragraph(entry.getKey()).setFont(arabicFont).setFontSize(9)));
-                vacantTable.addCell(new Cell().add(new Paragraph(String.join(", ", entry.getValue())).setFont(arabicFont).setFontSize(9)));
-            }
+        document.add(vacantTable);
 
-            document.add(vacantTable);
-            document.close();
-            
-            return baos.toByteArray();
-        } catch (Exception e) {
-            System.err.println("⚠ Erreur génération PDF salles vacantes: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+        // Ajouter les données
+        int rows = 0;
+        for (Map.Entry<String, java.util.Set<String>> entry : vacantBySlot.entrySet()) {
+            vacantTable.addCell(new Cell().add(new Paragraph(entry.getKey()).setFont(font).setFontSize(9)));
+            vacantTable.addCell(new Cell().add(new Paragraph(String.join(", ", entry.getValue())).setFont(font).setFontSize(9)));
+            if (++rows % 20 == 0) vacantTable.flush();
         }
+
+        vacantTable.complete();
+        document.close();
     }
 }
\ No newline at end of file
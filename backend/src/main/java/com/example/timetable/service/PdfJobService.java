@@ -0,0 +1,261 @@
+package com.example.timetable.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Génération de PDF en tâche de fond : les requêtes HTTP ne font que déposer un travail et
+ * consulter son état, le rendu se fait sur un pool dédié avec une file bornée.
+ * Une file pleine refuse le travail ({@link RejectedExecutionException}, 429 côté HTTP) :
+ * les threads Tomcat restent disponibles pour les endpoints JSON.
+ *
+ * Le résultat est écrit dans data/pdf-jobs/&lt;id&gt; et supprimé après la durée de conservation.
+ * Un travail n'est visible que de la session qui l'a déposé : pour les autres il n'existe pas.
+ */
+@Service
+public class PdfJobService {
+
+    private static final Path JOBS_DIR = Paths.get("data", "pdf-jobs");
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    /** Travail de rendu : écrit le document dans {@code out} et signale chaque élément terminé. */
+    @FunctionalInterface
+    public interface Work {
+        void run(OutputStream out, Runnable progress) throws Exception;
+    }
+
+    /** État d'un travail (lu par les requêtes de suivi pendant que le pool le met à jour). */
+    public static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final String owner;
+        private final String type;
+        private final String name;
+        private final String filename;
+        private final String contentType;
+        private final int total;
+        private final AtomicInteger done = new AtomicInteger();
+        private final Instant created = Instant.now();
+        private volatile Instant started;
+        private volatile Instant finished;
+        private volatile Status status = Status.QUEUED;
+        private volatile String error;
+        private volatile Future<?> future;
+
+        private Job(String owner, String type, String name, String filename, String contentType, int total) {
+            this.owner = owner;
+            this.type = type;
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.total = total;
+        }
+
+        public String id() { return id; }
+        public Status status() { return status; }
+        public String filename() { return filename; }
+        public String contentType() { return contentType; }
+
+        public Map<String, Object> describe() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("jobId", id);
+            out.put("type", type);
+            out.put("name", name);
+            out.put("status", status);
+            out.put("done", done.get());
+            out.put("total", total);
+            out.put("createdAt", created.toString());
+            out.put("startedAt", started == null ? null : started.toString());
+            out.put("finishedAt", finished == null ? null : finished.toString());
+            if (started != null) {
+                out.put("elapsedMs", Duration.between(started, finished != null ? finished : Instant.now()).toMillis());
+            }
+            out.put("error", error);
+            return out;
+        }
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pdf-job-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${timetable.pdf.jobs.threads:2}")
+    private int threads = 2;
+
+    @Value("${timetable.pdf.jobs.queue:20}")
+    private int queueSize = 20;
+
+    @Value("${timetable.pdf.jobs.ttl:1h}")
+    private Duration ttl = Duration.ofHours(1);
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                    Thread t = new Thread(r, "pdf-job");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        sweeper.scheduleWithFixedDelay(this::purgeExpired, 1, 1, TimeUnit.MINUTES);
+        // Résultats d'un démarrage précédent : plus aucun travail ne les référence
+        try {
+            if (Files.isDirectory(JOBS_DIR)) {
+                try (var files = Files.list(JOBS_DIR)) {
+                    for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠ Nettoyage des travaux PDF impossible: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Dépose un travail pour la session {@code owner} ; {@link RejectedExecutionException} si la file est pleine.
+     * {@code total} : nombre d'éléments à rendre (pour la progression).
+     */
+    public Job submit(String owner, String type, String name, String filename, String contentType, int total, Work work) {
+        Job job = new Job(owner, type, name, filename, contentType, total);
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.incrementAndGet();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        return job;
+    }
+
+    private void run(Job job, Work work) {
+        if (job.status == Status.CANCELLED) return;
+        job.started = Instant.now();
+        job.status = Status.RUNNING;
+        Path file = result(job);
+        try {
+            Files.createDirectories(JOBS_DIR);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+                work.run(out, job.done::incrementAndGet);
+            }
+            if (jobs.get(job.id) != job) {
+                // Annulé pendant le rendu : personne ne téléchargera le résultat
+                deleteResult(job);
+                return;
+            }
+            job.status = Status.DONE;
+            completed.incrementAndGet();
+        } catch (Exception e) {
+            deleteResult(job);
+            if (jobs.get(job.id) != job) return;
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+            failed.incrementAndGet();
+            System.err.println("⚠ Travail PDF " + job.id + " en échec: " + e.getMessage());
+        } finally {
+            job.finished = Instant.now();
+        }
+    }
+
+    /** Travail {@code id} de la session {@code owner}, ou null (inconnu ou déposé par une autre session). */
+    public Job get(String id, String owner) {
+        Job job = id == null ? null : jobs.get(id);
+        return job != null && job.owner.equals(owner) ? job : null;
+    }
+
+    /** Fichier du document d'un travail terminé, ou null. */
+    public Path resultFile(Job job) {
+        Path file = result(job);
+        return job.status == Status.DONE && Files.isRegularFile(file) ? file : null;
+    }
+
+    /** Annule un travail de la session {@code owner} (en file ou en cours) et supprime son résultat. */
+    public boolean cancel(String id, String owner) {
+        Job job = get(id, owner);
+        if (job == null || !jobs.remove(id, job)) return false;
+        if (job.status == Status.QUEUED || job.status == Status.RUNNING) {
+            job.status = Status.CANCELLED;
+            Future<?> future = job.future;
+            if (future != null) future.cancel(true);
+            executor.remove((Runnable) future);
+        }
+        deleteResult(job);
+        return true;
+    }
+
+    private void purgeExpired() {
+        Instant limit = Instant.now().minus(ttl);
+        for (Job job : jobs.values()) {
+            if (job.finished != null && job.finished.isBefore(limit)) {
+                jobs.remove(job.id);
+                deleteResult(job);
+            }
+        }
+    }
+
+    private static Path result(Job job) {
+        return JOBS_DIR.resolve(job.id);
+    }
+
+    private static void deleteResult(Job job) {
+        try {
+            Files.deleteIfExists(result(job));
+        } catch (IOException e) {
+            System.err.println("⚠ Résultat du travail PDF non supprimé: " + e.getMessage());
+        }
+    }
+
+    /** Compteurs, travaux en file et en cours. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueLimit", Math.max(1, queueSize));
+        stats.put("jobs", jobs.size());
+        stats.put("submitted", submitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.timetable.service;
+
+import com.example.timetable.model.SessionSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Regroupement des calculs identiques en cours (single-flight) : quand plusieurs requêtes demandent
+ * le même document (même jeu de données, même nom, mêmes options, mêmes renommages) pendant qu'il est
+ * calculé, la première le calcule et les suivantes attendent son résultat au lieu de le recalculer.
+ *
+ * Rien n'est gardé une fois le calcul terminé : la réutilisation au-delà des requêtes simultanées
+ * relève des caches (PdfCache...). Un suiveur qui n'obtient pas de résultat (échec du premier
+ * calcul, délai dépassé) calcule lui-même.
+ */
+@Service
+public class RequestCoalescer {
+
+    /** Identité d'un calcul : type ("timetable-subgroup"...), jeu de données, nom, options, renommages. */
+    public record Key(String kind, String dataset, String name, String options, String mappings) {
+
+        public static Key of(SessionSnapshot snapshot, String kind, String name, String options) {
+            return new Key(kind, snapshot.datasetKey().id(), name, options == null ? "" : options, snapshot.mappingsVersion());
+        }
+    }
+
+    /**
+     * Participation à un calcul : le premier arrivé ({@link #leader()}) calcule puis appelle
+     * {@link #complete(Object)} (toujours, même en cas d'échec) ; les autres attendent avec {@link #await()}
+     * ou, sans bloquer de thread, avec {@link #result()}. Un calcul non terminé dans le délai (réponse
+     * jamais écrite...) est abandonné : la clé est libérée et les suiveurs reçoivent null.
+     */
+    public final class Flight<T> {
+        private final String kind;
+        private final Object key;
+        private final CompletableFuture<Object> result;
+        private final boolean leader;
+
+        private Flight(String kind, Object key, CompletableFuture<Object> result, boolean leader) {
+            this.kind = kind;
+            this.key = key;
+            this.result = result;
+            this.leader = leader;
+        }
+
+        public boolean leader() {
+            return leader;
+        }
+
+        /** Publie le résultat (null : échec, les suiveurs calculent eux-mêmes) et libère la clé. */
+        public void complete(T value) {
+            if (!leader) return;
+            inFlight.remove(key, result);
+            result.complete(value);
+        }
+
+        /** Résultat du premier calcul, sans bloquer : null s'il a échoué ou n'est pas terminé dans le délai. */
+        @SuppressWarnings("unchecked")
+        public CompletableFuture<T> result() {
+            return result.thenApply(value -> {
+                if (value != null && !leader) counter(coalesced, kind).incrementAndGet();
+                return (T) value;
+            });
+        }
+
+        /** Résultat du premier calcul, ou null s'il a échoué ou n'est pas terminé dans le délai. */
+        @SuppressWarnings("unchecked")
+        public T await() {
+            try {
+                // Terminé au plus tard après le délai (abandon du responsable : null)
+                T value = (T) result.get();
+                if (value != null) counter(coalesced, kind).incrementAndGet();
+                return value;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> leaders = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> coalesced = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> timeouts = new ConcurrentHashMap<>();
+
+    // Attente maximale d'un suiveur (au-delà, il calcule lui-même et la clé est libérée)
+    @Value("${timetable.coalescing.timeout:30s}")
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * Rejoint le calcul en cours pour {@code key}, ou en devient le responsable s'il n'y en a pas.
+     * {@code kind} : catégorie pour les statistiques.
+     */
+    public <T> Flight<T> join(String kind, Object key) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return new Flight<>(kind, key, running, false);
+        }
+        counter(leaders, kind).incrementAndGet();
+        // Responsable qui ne termine jamais (réponse abandonnée avant l'écriture) : clé libérée après le délai.
+        // Un calcul terminé a déjà retiré sa clé, seul un abandon est compté.
+        mine.completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((value, error) -> {
+                    if (inFlight.remove(key, mine)) counter(timeouts, kind).incrementAndGet();
+                });
+        return new Flight<>(kind, key, mine, true);
+    }
+
+    /**
+     * Calcul synchrone regroupé : le premier appelant exécute {@code compute}, les appelants simultanés
+     * reçoivent le même résultat (à ne pas modifier). Un résultat null n'est pas partagé.
+     */
+    public <T> T execute(Key key, Supplier<T> compute) {
+        return execute(key.kind(), key, compute);
+    }
+
+    /** Idem avec une clé fournie par l'appelant (clé de cache par exemple). */
+    public <T> T execute(String kind, Object key, Supplier<T> compute) {
+        Flight<T> flight = join(kind, key);
+        if (!flight.leader()) {
+            T shared = flight.await();
+            if (shared != null) return shared;
+            return compute.get();
+        }
+        T value = null;
+        try {
+            value = compute.get();
+            return value;
+        } finally {
+            flight.complete(value);
+        }
+    }
+
+    private static AtomicLong counter(Map<String, AtomicLong> counters, String kind) {
+        return counters.computeIfAbsent(kind, k -> new AtomicLong());
+    }
+
+    /** Calculs en cours, calculs lancés et requêtes servies par un calcul déjà en cours, par type. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("computed", snapshot(leaders));
+        stats.put("coalesced", snapshot(coalesced));
+        stats.put("timeouts", snapshot(timeouts));
+        stats.put("coalescedTotal", coalesced.values().stream().mapToLong(AtomicLong::get).sum());
+        return stats;
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+        Map<String, Long> out = new TreeMap<>();
+        counters.forEach((kind, count) -> out.put(kind, count.get()));
+        return out;
+    }
+}
@@ -0,0 +1,395 @@
+package com.example.timetable.service;
+
+import com.example.timetable.model.DatasetKey;
+import com.example.timetable.model.SessionSnapshot;
+import com.example.timetable.model.TimetableData;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Stockage borné des sessions utilisateur.
+ *
+ * Les sessions inactives depuis plus que le TTL sont retirées de la mémoire, puis les moins
+ * récemment utilisées tant que le nombre de sessions ou la mémoire estimée dépasse la limite.
+ * Une session retirée reste sur disque dans data/sessions/&lt;id&gt; (XML, clé du jeu de données
+ * et mappings.json) et est rechargée au prochain accès ; son modèle parsé est partagé via {@link DatasetStore}.
+ * La mémoire d'un modèle partagé n'est comptée qu'une fois.
+ *
+ * Après un redémarrage, les sessions persistées sont réhydratées à la demande, par la requête qui
+ * en a besoin : un seul chargement par session même si plusieurs onglets la demandent en même temps,
+ * et une session n'attend jamais le chargement d'une autre. Au démarrage, seules les sessions les plus
+ * récentes sont préchargées, en arrière-plan sur un pool dédié. Un chargement en échec n'est pas gardé :
+ * la requête reçoit une erreur et l'accès suivant réessaie.
+ *
+ * Les modifications (upload, renommage) passent par {@link #modify} : la session ne peut pas être
+ * retirée de la mémoire pendant qu'elle est modifiée et sauvegardée, sinon une copie rechargée
+ * depuis le disque entre-temps ne verrait pas la modification.
+ */
+@Service
+public class SessionStore {
+
+    private static final Path SESSIONS_ROOT = Paths.get("data", "sessions");
+    private static final String TEACHERS_FILE = "teachers.xml";
+    private static final String SUBGROUPS_FILE = "subgroups.xml";
+    private static final String ACTIVITIES_FILE = "activities.xml";
+    private static final String MAPPINGS_FILE = "mappings.json";
+    private static final String DATASET_FILE = "dataset.properties";
+    private static final String LEGACY_SNAPSHOT_FILE = "timetable.snapshot";
+
+    // Identifiant utilisable comme nom de dossier (id de session servlet ou header X-Session-ID)
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_-]{1,128}");
+
+    private static final JsonMapper JSON = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .build();
+
+    private final Map<String, UserData> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<UserData>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadFailures = new AtomicLong();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${timetable.sessions.max-count:1000}")
+    private int maxSessions = 1000;
+
+    @Value("${timetable.sessions.max-memory:512MB}")
+    private DataSize maxMemory = DataSize.ofMegabytes(512);
+
+    @Value("${timetable.sessions.idle-ttl:8h}")
+    private Duration idleTtl = Duration.ofHours(8);
+
+    @Value("${timetable.sessions.rehydrate-threads:2}")
+    private int rehydrateThreads = 2;
+
+    @Value("${timetable.sessions.preload:16}")
+    private int preload = 16;
+
+    private ExecutorService loader;
+
+    @Autowired
+    private DatasetStore datasetStore;
+
+    @PostConstruct
+    void start() {
+        loader = Executors.newFixedThreadPool(Math.max(1, rehydrateThreads), r -> {
+            Thread t = new Thread(r, "session-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::enforceLimits, 1, 1, TimeUnit.MINUTES);
+        // Le parcours de data/sessions ne bloque pas le démarrage
+        loader.execute(this::preloadRecentSessions);
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+        loader.shutdownNow();
+    }
+
+    /**
+     * Données de la session, rechargées depuis son dossier si elle a été retirée de la mémoire.
+     * {@link IllegalStateException} si la session persistée n'a pas pu être relue.
+     */
+    public UserData get(String sessionId) {
+        UserData userData = sessions.get(sessionId);
+        if (userData != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            Path dir = persistedDir(sessionId);
+            userData = dir == null
+                    ? sessions.computeIfAbsent(sessionId, k -> new UserData())
+                    : rehydrate(sessionId, dir);
+            if (sessions.size() > maxSessions) enforceLimits();
+        }
+        userData.touch();
+        return userData;
+    }
+
+    /** Modification d'une session, sauvegardée sur disque avant de rendre la main. */
+    @FunctionalInterface
+    public interface Change<T> {
+        T apply(UserData userData) throws IOException;
+    }
+
+    /**
+     * Applique {@code change} à la session enregistrée dans le stockage. La session est épinglée
+     * (jamais retirée par {@link #enforceLimits}) jusqu'à la fin de {@code change}, qui publie la
+     * nouvelle version et la sauvegarde : un rechargement depuis le disque ne peut pas se faire
+     * entre les deux. Si la session a été retirée avant d'être épinglée, on reprend avec la
+     * session rechargée.
+     */
+    public <T> T modify(String sessionId, Change<T> change) throws IOException {
+        while (true) {
+            UserData userData = get(sessionId);
+            synchronized (this) {
+                if (sessions.get(sessionId) != userData) continue;
+                userData.pin();
+            }
+            try {
+                return change.apply(userData);
+            } finally {
+                userData.unpin();
+            }
+        }
+    }
+
+    /**
+     * Charge la session sur le thread appelant, ou attend le chargement déjà en cours de la même session
+     * (requêtes concurrentes, préchargement). Rien n'est mis en cache si le chargement échoue.
+     */
+    private UserData rehydrate(String sessionId, Path dir) {
+        CompletableFuture<UserData> mine = new CompletableFuture<>();
+        CompletableFuture<UserData> running = loading.putIfAbsent(sessionId, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            UserData loaded = load(sessionId, dir);
+            UserData cached = sessions.putIfAbsent(sessionId, loaded);
+            UserData result = cached != null ? cached : loaded;
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(sessionId, mine);
+        }
+    }
+
+    /** true si l'identifiant peut désigner une session (nom de dossier sans séparateur ni "..") */
+    public static boolean isValidSessionId(String sessionId) {
+        return sessionId != null && SESSION_ID.matcher(sessionId).matches();
+    }
+
+    /** Dossier de session persistée, ou null si l'identifiant est invalide ou n'a rien sur disque. */
+    public static Path persistedDir(String sessionId) {
+        if (!isValidSessionId(sessionId)) return null;
+        Path dir = SESSIONS_ROOT.resolve(sessionId);
+        return Files.isDirectory(dir) ? dir : null;
+    }
+
+    /**
+     * Précharge en arrière-plan les sessions persistées les plus récemment modifiées.
+     */
+    private void preloadRecentSessions() {
+        if (!Files.isDirectory(SESSIONS_ROOT)) return;
+        List<Path> dirs;
+        try (Stream<Path> list = Files.list(SESSIONS_ROOT)) {
+            dirs = list.filter(Files::isDirectory)
+                    .filter(d -> SESSION_ID.matcher(d.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(SessionStore::lastModified).reversed())
+                    .toList();
+        } catch (IOException e) {
+            System.err.println("⚠ Lecture de " + SESSIONS_ROOT + " impossible: " + e.getMessage());
+            return;
+        }
+        System.out.println("💾 Sessions persistées: " + dirs.size() + " (réhydratées à la demande, "
+                + Math.min(preload, dirs.size()) + " préchargées)");
+        for (Path dir : dirs.subList(0, Math.min(Math.max(preload, 0), dirs.size()))) {
+            String sessionId = dir.getFileName().toString();
+            if (sessions.containsKey(sessionId)) continue;
+            loader.execute(() -> {
+                try {
+                    if (!sessions.containsKey(sessionId)) rehydrate(sessionId, dir);
+                } catch (RuntimeException e) {
+                    // Déjà signalé par load() : la session sera rechargée au premier accès
+                }
+            });
+        }
+    }
+
+    private static long lastModified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /** Vue en lecture des sessions présentes en mémoire. */
+    public Map<String, UserData> sessions() {
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    /**
+     * Retire les sessions expirées, puis les moins récemment utilisées jusqu'à respecter
+     * le nombre maximal de sessions et le budget mémoire (la plus récente est toujours gardée).
+     * Les sessions en cours de modification ne sont pas retirées.
+     */
+    public synchronized void enforceLimits() {
+        long expiredBefore = System.currentTimeMillis() - idleTtl.toMillis();
+        List<Map.Entry<String, UserData>> byAge = new ArrayList<>(sessions.entrySet());
+        byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess()));
+
+        // Un modèle partagé par plusieurs sessions n'est libéré qu'avec la dernière d'entre elles
+        Map<TimetableData, Integer> references = new IdentityHashMap<>();
+        long total = 0;
+        for (Map.Entry<String, UserData> e : byAge) {
+            TimetableData data = e.getValue().snapshot().data();
+            if (references.merge(data, 1, Integer::sum) == 1) total += data.estimatedBytes();
+        }
+        int count = byAge.size();
+        for (Map.Entry<String, UserData> e : byAge) {
+            boolean expired = e.getValue().lastAccess() < expiredBefore;
+            boolean overBudget = count > maxSessions || total > maxMemory.toBytes();
+            if (!expired && (!overBudget || count == 1)) break;
+            // En cours de modification (voir modify) : retirée à un prochain passage
+            if (e.getValue().pinned()) continue;
+            if (sessions.remove(e.getKey(), e.getValue())) {
+                evictions.incrementAndGet();
+                count--;
+                TimetableData data = e.getValue().snapshot().data();
+                Integer left = references.computeIfPresent(data, (d, n) -> n - 1);
+                if (left != null && left == 0) total -= data.estimatedBytes();
+                System.out.println("♻ Session retirée de la mémoire: " + e.getKey() + (expired ? " (inactive)" : ""));
+            }
+        }
+    }
+
+    /** Compteurs du cache de sessions (hits, misses, évictions, rechargements depuis le disque). */
+    public Map<String, Object> stats() {
+        Set<TimetableData> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        long total = 0;
+        for (UserData userData : sessions.values()) {
+            TimetableData data = userData.snapshot().data();
+            if (distinct.add(data)) total += data.estimatedBytes();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("estimatedBytes", total);
+        stats.put("maxSessions", maxSessions);
+        stats.put("maxBytes", maxMemory.toBytes());
+        stats.put("idleTtlSeconds", idleTtl.toSeconds());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("reloads", reloads.get());
+        stats.put("reloadFailures", reloadFailures.get());
+        stats.put("loading", loading.size());
+        stats.put("datasets", datasetStore.stats());
+        return stats;
+    }
+
+    /**
+     * Session persistée relue depuis data/sessions/&lt;id&gt; : jeu de données partagé et renommages.
+     * {@link IllegalStateException} si elle n'a pas pu être relue.
+     */
+    private UserData load(String sessionId, Path dir) {
+        UserData userData = new UserData();
+        try {
+            long start = System.nanoTime();
+            DatasetKey key = readDatasetKey(dir);
+            if (key == null) key = importFiles(sessionId, dir);
+            TimetableData data = datasetStore.dataset(key);
+            Map<String, Map<String, String>> mappings = readMappings(dir.resolve(MAPPINGS_FILE));
+            SessionSnapshot snapshot = SessionSnapshot.EMPTY.withDataset(key, data)
+                    .withMappings(mappings.getOrDefault("teachers", Map.of()), mappings.getOrDefault("rooms", Map.of()));
+            userData.update(current -> snapshot);
+            reloads.incrementAndGet();
+            System.out.println("↻ Session rechargée depuis le disque: " + sessionId
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        } catch (Exception e) {
+            reloadFailures.incrementAndGet();
+            System.err.println("⚠ Impossible de recharger la session " + sessionId + ": " + e.getMessage());
+            throw new IllegalStateException("Session " + sessionId + " indisponible, réessayer", e);
+        }
+        return userData;
+    }
+
+    /**
+     * Session sauvegardée avant le stockage par empreinte : ses XML sont importés dans le stockage
+     * partagé (et remplacés par des liens), puis la clé du jeu de données est enregistrée.
+     */
+    private DatasetKey importFiles(String sessionId, Path dir) throws IOException {
+        String[] hashes = new String[3];
+        String[] files = {TEACHERS_FILE, SUBGROUPS_FILE, ACTIVITIES_FILE};
+        for (int i = 0; i < files.length; i++) {
+            Path file = dir.resolve(files[i]);
+            if (!Files.isRegularFile(file)) continue;
+            try (InputStream in = Files.newInputStream(file)) {
+                hashes[i] = datasetStore.store(in);
+            }
+            datasetStore.link(hashes[i], file);
+        }
+        DatasetKey key = DatasetKey.EMPTY.merge(hashes[0], hashes[1], hashes[2]);
+        saveDatasetKey(sessionId, key);
+        Files.deleteIfExists(dir.resolve(LEGACY_SNAPSHOT_FILE));
+        return key;
+    }
+
+    /**
+     * Enregistre dans le dossier de la session la clé du jeu de données qu'elle utilise.
+     */
+    public void saveDatasetKey(String sessionId, DatasetKey key) throws IOException {
+        if (!SESSION_ID.matcher(sessionId).matches()) return;
+        Path dir = SESSIONS_ROOT.resolve(sessionId);
+        Files.createDirectories(dir);
+        Properties props = new Properties();
+        props.setProperty("teachers", key.teachers());
+        props.setProperty("subgroups", key.subgroups());
+        props.setProperty("activities", key.activities());
+        Path tmp = dir.resolve(DATASET_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "Empreintes SHA-256 des fichiers de la session");
+        }
+        Files.move(tmp, dir.resolve(DATASET_FILE), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static DatasetKey readDatasetKey(Path dir) throws IOException {
+        Path file = dir.resolve(DATASET_FILE);
+        if (!Files.isRegularFile(file)) return null;
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        return new DatasetKey(props.getProperty("teachers"), props.getProperty("subgroups"), props.getProperty("activities"));
+    }
+
+    private static Map<String, Map<String, String>> readMappings(Path file) throws IOException {
+        if (!Files.exists(file)) return Map.of();
+        Map<String, Map<String, String>> mappings = JSON.readValue(file.toFile(), new TypeReference<>() {});
+        return mappings == null ? Map.of() : mappings;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.timetable.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Flux qui recopie dans {@code copy} tout ce qui est lu : le fichier envoyé est écrit sur disque
+ * pendant que le parseur le lit, en une seule lecture.
+ *
+ * {@link #close()} ne ferme rien (le parseur DOM ferme son flux en fin de document) : le reste
+ * du fichier est lu par {@link #drain()}, puis les flux sont fermés par l'appelant.
+ */
+final class TeeInputStream extends FilterInputStream {
+
+    private final OutputStream copy;
+
+    TeeInputStream(InputStream in, OutputStream copy) {
+        super(in);
+        this.copy = copy;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) copy.write(b);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        int n = in.read(buf, off, len);
+        if (n > 0) copy.write(buf, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Les octets sautés doivent aussi être recopiés
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (r < 0) break;
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** Lit (et recopie) la fin du fichier que le parseur n'a pas consommée. */
+    void drain() throws IOException {
+        byte[] buf = new byte[8192];
+        while (read(buf, 0, buf.length) >= 0) {
+            // recopié par read
+        }
+    }
+}
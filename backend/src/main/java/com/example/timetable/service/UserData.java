@@ -0,0 +1,60 @@
+package com.example.timetable.service;
+
+import com.example.timetable.model.SessionSnapshot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Classe pour stocker les données d'un utilisateur (session).
+ * Les données sont publiées en une seule opération atomique : chaque upload ou renommage
+ * remplace la version courante, les lecteurs travaillent sur la version prise en début de requête.
+ */
+public class UserData {
+    private final AtomicReference<SessionSnapshot> snapshot = new AtomicReference<>(SessionSnapshot.EMPTY);
+    private volatile long lastAccess = System.currentTimeMillis();
+    // Modifications en cours (SessionStore.modify) : la session reste en mémoire
+    private final AtomicInteger pins = new AtomicInteger();
+
+    public SessionSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /** Publie une nouvelle version calculée à partir de la version courante (rejouée en cas de conflit). */
+    public SessionSnapshot update(UnaryOperator<SessionSnapshot> change) {
+        return snapshot.updateAndGet(change);
+    }
+
+    /**
+     * Publie {@code next} si la version courante est toujours {@code expected} ; sinon rien n'est publié
+     * et l'appelant recommence à partir de la nouvelle version (calculs coûteux faits hors de {@link #update}).
+     */
+    public boolean publish(SessionSnapshot expected, SessionSnapshot next) {
+        return snapshot.compareAndSet(expected, next);
+    }
+
+    public boolean hasData() {
+        return snapshot().hasData();
+    }
+
+    long lastAccess() {
+        return lastAccess;
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    void pin() {
+        pins.incrementAndGet();
+    }
+
+    void unpin() {
+        pins.decrementAndGet();
+    }
+
+    boolean pinned() {
+        return pins.get() > 0;
+    }
+}
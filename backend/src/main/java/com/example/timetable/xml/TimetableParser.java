@@ -1,25 +1,141 @@
 package com.example.timetable.xml;
 
+import com.example.timetable.model.TimetableData;
 import org.w3c.dom.*;
 import javax.xml.parsers.*;
 import java.io.InputStream;
 import java.util.*;
 
 public class TimetableParser {
+    /**
+     * Mode de parsing des fichiers XML : DOM (arbre complet en mémoire)
+     * ou STAX (lecture en flux, mémoire bornée). Les deux produisent les mêmes structures.
+     */
+    public enum Mode { DOM, STAX }
+
+    /**
+     * DocumentBuilder sans entités externes ni DTD externe (comme le parseur STAX) : un fichier
+     * envoyé ne peut pas faire lire d'autres fichiers du serveur.
+     */
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        return factory.newDocumentBuilder();
+    }
+
     public static class ActivitySlot {
+        public final String activityId;
         public final String dayRaw;
         public final String hour;
         public final String room;
         public ActivitySlot(String dayRaw, String hour, String room) {
+            this("", dayRaw, hour, room);
+        }
+        public ActivitySlot(String activityId, String dayRaw, String hour, String room) {
+            this.activityId = activityId;
             this.dayRaw = dayRaw;
             this.hour = hour;
             this.room = room;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ActivitySlot other)) return false;
+            return activityId.equals(other.activityId) && dayRaw.equals(other.dayRaw)
+                    && hour.equals(other.hour) && room.equals(other.room);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(activityId, dayRaw, hour, room);
+        }
+    }
+
+    /**
+     * Lit teachers.xml directement dans le modèle compact (sans structure intermédiaire en mode STAX).
+     */
+    public static void loadTeachers(InputStream xmlStream, Mode mode, TimetableData.Builder builder) throws Exception {
+        if (mode == Mode.STAX) {
+            TimetableStaxParser.parseTeachers(xmlStream, new TimetableStaxParser.TeacherHandler() {
+                private int teacher = TimetableData.NONE;
+                @Override public void teacher(String name) { teacher = builder.addTeacher(name); }
+                @Override public void hour(String dayRaw, String hour, String activityId, String subject, String students, String room) {
+                    if (teacher != TimetableData.NONE) builder.teacherHour(teacher, dayRaw, hour, activityId, subject, students, room);
+                }
+            });
+            return;
+        }
+        for (var t : parseTeachers(xmlStream).entrySet()) {
+            int teacher = builder.addTeacher(t.getKey());
+            for (var day : t.getValue().entrySet()) {
+                for (var hour : day.getValue().entrySet()) {
+                    Map<String,String> d = hour.getValue();
+                    builder.teacherHour(teacher, day.getKey(), hour.getKey(),
+                            d.get("activity"), d.get("subject"), d.get("students"), d.get("room"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lit subgroups.xml directement dans le modèle compact.
+     */
+    public static void loadSubgroups(InputStream xmlStream, Mode mode, TimetableData.Builder builder) throws Exception {
+        if (mode == Mode.STAX) {
+            TimetableStaxParser.parseSubgroups(xmlStream, new TimetableStaxParser.SubgroupHandler() {
+                private int subgroup = TimetableData.NONE;
+                @Override public void subgroup(String name) { subgroup = builder.addSubgroup(name); }
+                @Override public void hour(String dayRaw, String hour, String activityId, String teacher, String subject, String room) {
+                    if (subgroup != TimetableData.NONE) builder.subgroupHour(subgroup, dayRaw, hour, activityId, teacher, subject, room);
+                }
+            });
+            return;
+        }
+        for (var sg : parseSubgroups(xmlStream).entrySet()) {
+            int subgroup = builder.addSubgroup(sg.getKey());
+            for (var day : sg.getValue().entrySet()) {
+                for (var hour : day.getValue().entrySet()) {
+                    Map<String,String> d = hour.getValue();
+                    builder.subgroupHour(subgroup, day.getKey(), hour.getKey(),
+                            d.get("activity"), d.get("teacher"), d.get("subject"), d.get("room"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lit activities.xml directement dans le modèle compact.
+     */
+    public static void loadActivities(InputStream xmlStream, Mode mode, TimetableData.Builder builder) throws Exception {
+        if (mode == Mode.STAX) {
+            TimetableStaxParser.parseActivities(xmlStream, builder::activity);
+            return;
+        }
+        for (ActivitySlot a : parseActivities(xmlStream)) {
+            builder.activity(a.activityId, a.dayRaw, a.hour, a.room);
+        }
+    }
+
+    public static Map<String, Map<String, Map<String, Map<String,String>>>> parseSubgroups(InputStream xmlStream, Mode mode) throws Exception {
+        return mode == Mode.STAX ? TimetableStaxParser.parseSubgroups(xmlStream) : parseSubgroups(xmlStream);
+    }
+
+    public static Map<String, Map<String, Map<String, Map<String,String>>>> parseTeachers(InputStream xmlStream, Mode mode) throws Exception {
+        return mode == Mode.STAX ? TimetableStaxParser.parseTeachers(xmlStream) : parseTeachers(xmlStream);
+    }
+
+    public static List<ActivitySlot> parseActivities(InputStream xmlStream, Mode mode) throws Exception {
+        return mode == Mode.STAX ? TimetableStaxParser.parseActivities(xmlStream) : parseActivities(xmlStream);
     }
 
     public static Map<String, Map<String, Map<String, Map<String,String>>>> parseSubgroups(InputStream xmlStream) throws Exception {
         Map<String, Map<String, Map<String, Map<String,String>>>> out = new HashMap<>();
-        DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        DocumentBuilder db = newDocumentBuilder();
         Document doc = db.parse(xmlStream);
         NodeList subgroups = doc.getElementsByTagName("Subgroup");
         for (int i=0; i<subgroups.getLength(); i++) {
@@ -38,6 +154,7 @@ public class TimetableParser {
                     NodeList activities = hour.getElementsByTagName("Activity");
                     if (activities.getLength() > 0) {
                         Map<String,String> details = new HashMap<>();
+                        details.put("activity", ((Element) activities.item(0)).getAttribute("id"));
                         details.put("teacher", attrOfChild(hour, "Teacher"));
                         details.put("subject", attrOfChild(hour, "Subject"));
                         details.put("room", attrOfChild(hour, "Room"));
@@ -50,40 +167,9 @@ public class TimetableParser {
         return out;
     }
 
-    public static String mapHourToTimeslot(boolean morning, String hour) {
-        if(morning) {
-            return switch(hour) {
-                case "H1" -> "08:30 - 09:30";
-                case "H2" -> "09:30 - 10:30";
-                case "H3" -> "10:30 - 11:30";
-                case "H4" -> "11:30 - 12:30";
-                default -> hour;
-            };
-        } else {
-            return switch(hour) {
-                case "H1" -> "14:30 - 15:30";
-                case "H2" -> "15:30 - 16:30";
-                case "H3" -> "16:30 - 17:30";
-                case "H4" -> "17:30 - 18:30";
-                default -> hour;
-            };
-        }
-    }
-
-    public static String normalizeDayName(String dayRaw) {
-        String low = dayRaw.toLowerCase();
-        if(low.startsWith("lundi")) return "Lundi";
-        if(low.startsWith("mardi")) return "Mardi";
-        if(low.startsWith("mercredi")) return "Mercredi";
-        if(low.startsWith("jeudi")) return "Jeudi";
-        if(low.startsWith("vendredi")) return "Vendredi";
-        if(low.startsWith("samedi")) return "Samedi";
-        return dayRaw;
-    }
-
     public static Map<String, Map<String, Map<String, Map<String,String>>>> parseTeachers(InputStream xmlStream) throws Exception {
         Map<String, Map<String, Map<String, Map<String,String>>>> out = new HashMap<>();
-        DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        DocumentBuilder db = newDocumentBuilder();
         Document doc = db.parse(xmlStream);
         NodeList teachers = doc.getElementsByTagName("Teacher");
         for (int i=0;i<teachers.getLength();i++){
@@ -100,10 +186,12 @@ public class TimetableParser {
                 for(int h=0; h<hours.getLength(); h++){
                     Element hour = (Element) hours.item(h);
                     String hourName = hour.getAttribute("name");
+                    String activityId = attrOfChild(hour, "Activity", "id");
                     String subject = attrOfChild(hour, "Subject");
                     String students = attrOfChild(hour, "Students");
                     String room = attrOfChild(hour, "Room");
                     Map<String,String> details = new HashMap<>();
+                    details.put("activity", activityId);
                     details.put("subject", subject);
                     details.put("students", students);
                     details.put("room", room);
@@ -117,18 +205,19 @@ public class TimetableParser {
 
     public static List<ActivitySlot> parseActivities(InputStream xmlStream) throws Exception {
         List<ActivitySlot> out = new ArrayList<>();
-        DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        DocumentBuilder db = newDocumentBuilder();
         Document doc = db.parse(xmlStream);
         NodeList nodes = doc.getElementsByTagName("Activity");
         for (int i = 0; i < nodes.getLength(); i++) {
             Element a = (Element) nodes.item(i);
+            String id = textOfChild(a, "Id");
             String day = textOfChild(a, "Day");
             String hour = textOfChild(a, "Hour");
             String room = textOfChild(a, "Room");
             if (hour == null || hour.isBlank()) continue;
             if (day == null || day.isBlank()) continue;
             if (room == null) room = "";
-            out.add(new ActivitySlot(day, hour, room));
+            out.add(new ActivitySlot(id, day, hour, room));
         }
         return out;
     }
@@ -141,9 +230,13 @@ public class TimetableParser {
     }
 
     private static String attrOfChild(Element parent, String tag){
+        return attrOfChild(parent, tag, "name");
+    }
+
+    private static String attrOfChild(Element parent, String tag, String attr){
         NodeList l = parent.getElementsByTagName(tag);
         if(l.getLength()==0) return "";
         Element e = (Element) l.item(0);
-        return e.getAttribute("name");
+        return e.getAttribute(attr);
     }
 }
@@ -0,0 +1,247 @@
+package com.example.timetable.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Parseur StAX (pull) des exports FET : un seul passage en avant sur le flux,
+ * sans construire d'arbre DOM. La mémoire utilisée est bornée par la taille
+ * d'une cellule (Hour / Activity), quelle que soit la taille du fichier.
+ *
+ * Les règles d'extraction reproduisent exactement celles du parseur DOM
+ * de {@link TimetableParser} (premier enfant trouvé, valeurs vides par défaut).
+ */
+public final class TimetableStaxParser {
+
+    /** Reçoit le contenu de teachers.xml, cellule par cellule. */
+    public interface TeacherHandler {
+        void teacher(String name);
+        default void day(String dayRaw) { }
+        void hour(String dayRaw, String hour, String activityId, String subject, String students, String room);
+    }
+
+    /** Reçoit le contenu de subgroups.xml (seules les heures avec une activité). */
+    public interface SubgroupHandler {
+        void subgroup(String name);
+        default void day(String dayRaw) { }
+        void hour(String dayRaw, String hour, String activityId, String teacher, String subject, String room);
+    }
+
+    /** Reçoit le contenu de activities.xml (seules les activités placées). */
+    public interface ActivityHandler {
+        void activity(String activityId, String dayRaw, String hour, String room);
+    }
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private TimetableStaxParser() {}
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return f;
+    }
+
+    public static void parseTeachers(InputStream xmlStream, TeacherHandler handler) throws XMLStreamException {
+        XMLStreamReader r = FACTORY.createXMLStreamReader(xmlStream);
+        try {
+            String dayName = "";
+            String hourName = null;
+            String activityId = null, subject = null, students = null, room = null;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (r.getLocalName()) {
+                        case "Teacher" -> {
+                            String name = attr(r, "name");
+                            if (name.isEmpty()) name = attr(r, "id");
+                            handler.teacher(name);
+                        }
+                        case "Day" -> {
+                            dayName = attr(r, "name");
+                            handler.day(dayName);
+                        }
+                        case "Hour" -> {
+                            hourName = attr(r, "name");
+                            activityId = null; subject = null; students = null; room = null;
+                        }
+                        case "Activity" -> { if (hourName != null && activityId == null) activityId = attr(r, "id"); }
+                        case "Subject" -> { if (hourName != null && subject == null) subject = attr(r, "name"); }
+                        case "Students" -> { if (hourName != null && students == null) students = attr(r, "name"); }
+                        case "Room" -> { if (hourName != null && room == null) room = attr(r, "name"); }
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Hour".equals(r.getLocalName())) {
+                    handler.hour(dayName, hourName, orEmpty(activityId), orEmpty(subject), orEmpty(students), orEmpty(room));
+                    hourName = null;
+                }
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    public static void parseSubgroups(InputStream xmlStream, SubgroupHandler handler) throws XMLStreamException {
+        XMLStreamReader r = FACTORY.createXMLStreamReader(xmlStream);
+        try {
+            String dayName = "";
+            String hourName = null;
+            String activityId = null;
+            String teacher = null, subject = null, room = null;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (r.getLocalName()) {
+                        case "Subgroup" -> handler.subgroup(attr(r, "name"));
+                        case "Day" -> {
+                            dayName = attr(r, "name");
+                            handler.day(dayName);
+                        }
+                        case "Hour" -> {
+                            hourName = attr(r, "name");
+                            activityId = null;
+                            teacher = null; subject = null; room = null;
+                        }
+                        case "Activity" -> { if (hourName != null && activityId == null) activityId = attr(r, "id"); }
+                        case "Teacher" -> { if (hourName != null && teacher == null) teacher = attr(r, "name"); }
+                        case "Subject" -> { if (hourName != null && subject == null) subject = attr(r, "name"); }
+                        case "Room" -> { if (hourName != null && room == null) room = attr(r, "name"); }
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Hour".equals(r.getLocalName())) {
+                    if (activityId != null) {
+                        handler.hour(dayName, hourName, activityId, orEmpty(teacher), orEmpty(subject), orEmpty(room));
+                    }
+                    hourName = null;
+                }
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    public static void parseActivities(InputStream xmlStream, ActivityHandler handler) throws XMLStreamException {
+        XMLStreamReader r = FACTORY.createXMLStreamReader(xmlStream);
+        try {
+            boolean inActivity = false;
+            String id = null, day = null, hour = null, room = null;
+            // Champ en cours de lecture (texte accumulé jusqu'à la balise fermante)
+            String field = null;
+            StringBuilder text = new StringBuilder();
+            while (r.hasNext()) {
+                int event = r.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        String tag = r.getLocalName();
+                        if ("Activity".equals(tag)) {
+                            inActivity = true;
+                            id = null; day = null; hour = null; room = null;
+                        } else if (inActivity && field == null
+                                && (("Id".equals(tag) && id == null)
+                                    || ("Day".equals(tag) && day == null)
+                                    || ("Hour".equals(tag) && hour == null)
+                                    || ("Room".equals(tag) && room == null))) {
+                            field = tag;
+                            text.setLength(0);
+                        }
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                        if (field != null) text.append(r.getText());
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        String tag = r.getLocalName();
+                        if (tag.equals(field)) {
+                            switch (field) {
+                                case "Id" -> id = text.toString();
+                                case "Day" -> day = text.toString();
+                                case "Hour" -> hour = text.toString();
+                                case "Room" -> room = text.toString();
+                                default -> { }
+                            }
+                            field = null;
+                        } else if ("Activity".equals(tag) && inActivity) {
+                            inActivity = false;
+                            if (hour == null || hour.isBlank()) continue;
+                            if (day == null || day.isBlank()) continue;
+                            handler.activity(id == null ? "" : id, day, hour, room == null ? "" : room);
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    // ==================== Variantes produisant les mêmes structures que le DOM ====================
+
+    public static Map<String, Map<String, Map<String, Map<String,String>>>> parseTeachers(InputStream xmlStream) throws XMLStreamException {
+        Map<String, Map<String, Map<String, Map<String,String>>>> out = new HashMap<>();
+        parseTeachers(xmlStream, new TeacherHandler() {
+            private Map<String, Map<String, Map<String,String>>> schedule;
+            @Override public void teacher(String name) {
+                schedule = new HashMap<>();
+                out.put(name, schedule);
+            }
+            @Override public void day(String dayRaw) {
+                if (schedule != null) schedule.putIfAbsent(dayRaw, new HashMap<>());
+            }
+            @Override public void hour(String dayRaw, String hour, String activityId, String subject, String students, String room) {
+                if (schedule == null) return;
+                Map<String,String> details = new HashMap<>();
+                details.put("activity", activityId);
+                details.put("subject", subject);
+                details.put("students", students);
+                details.put("room", room);
+                schedule.computeIfAbsent(dayRaw, k -> new HashMap<>()).put(hour, details);
+            }
+        });
+        return out;
+    }
+
+    public static Map<String, Map<String, Map<String, Map<String,String>>>> parseSubgroups(InputStream xmlStream) throws XMLStreamException {
+        Map<String, Map<String, Map<String, Map<String,String>>>> out = new HashMap<>();
+        parseSubgroups(xmlStream, new SubgroupHandler() {
+            private Map<String, Map<String, Map<String,String>>> schedule;
+            @Override public void subgroup(String name) {
+                schedule = new HashMap<>();
+                out.put(name, schedule);
+            }
+            @Override public void day(String dayRaw) {
+                if (schedule != null) schedule.putIfAbsent(dayRaw, new HashMap<>());
+            }
+            @Override public void hour(String dayRaw, String hour, String activityId, String teacher, String subject, String room) {
+                if (schedule == null) return;
+                Map<String,String> details = new HashMap<>();
+                details.put("activity", activityId);
+                details.put("teacher", teacher);
+                details.put("subject", subject);
+                details.put("room", room);
+                schedule.computeIfAbsent(dayRaw, k -> new HashMap<>()).put(hour, details);
+            }
+        });
+        return out;
+    }
+
+    public static List<TimetableParser.ActivitySlot> parseActivities(InputStream xmlStream) throws XMLStreamException {
+        List<TimetableParser.ActivitySlot> out = new ArrayList<>();
+        parseActivities(xmlStream, (id, day, hour, room) -> out.add(new TimetableParser.ActivitySlot(id, day, hour, room)));
+        return out;
+    }
+
+    private static String attr(XMLStreamReader r, String name) {
+        String v = r.getAttributeValue(null, name);
+        return v == null ? "" : v;
+    }
+
+    private static String orEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
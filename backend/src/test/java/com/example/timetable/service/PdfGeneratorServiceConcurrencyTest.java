@@ -0,0 +1,108 @@
+package com.example.timetable.service;
+
+import com.example.timetable.dto.SlotDto;
+import com.example.timetable.model.SlotCodec;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Rendus simultanés avec une seule instance du service (programme de police et modèle d'en-tête
+ * partagés) : chaque PDF doit être complet et embarquer sa propre police Identity-H.
+ */
+class PdfGeneratorServiceConcurrencyTest {
+
+    private static final int DOCUMENTS = 24;
+    private static final int THREADS = 8;
+
+    private final PdfGeneratorService service = new PdfGeneratorService();
+
+    @Test
+    void parallelRendersProduceValidPdfsWithEmbeddedIdentityHFont() throws Exception {
+        assumeTrue(service.hasUnicodeFont(), "aucune police Unicode (fonts/ ou polices système) sur cette machine");
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<byte[]>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < DOCUMENTS; i++) {
+                String name = "CLASSE-" + i;
+                String type = i % 2 == 0 ? "subgroup" : "teacher";
+                List<SlotDto> timetable = timetable(name);
+                Callable<byte[]> render = () -> {
+                    start.await();
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    service.writeTimetablePdf(name, timetable, type, out);
+                    return out.toByteArray();
+                };
+                results.add(pool.submit(render));
+            }
+            start.countDown();
+
+            for (int i = 0; i < DOCUMENTS; i++) {
+                assertRenderedPdf("CLASSE-" + i, results.get(i).get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertRenderedPdf(String name, byte[] pdf) throws Exception {
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(pdf)))) {
+            assertTrue(document.getNumberOfPages() >= 1, name + ": aucune page");
+
+            PdfDictionary fonts = document.getFirstPage().getResources().getResource(PdfName.Font);
+            assertNotNull(fonts, name + ": pas de police sur la page");
+            boolean identityH = false;
+            for (PdfName fontName : fonts.keySet()) {
+                PdfDictionary font = fonts.getAsDictionary(fontName);
+                if (!PdfName.Type0.equals(font.getAsName(PdfName.Subtype))) continue;
+                assertEquals(PdfName.IdentityH, font.getAsName(PdfName.Encoding), name + ": encodage");
+                PdfDictionary descriptor = font.getAsArray(PdfName.DescendantFonts).getAsDictionary(0)
+                        .getAsDictionary(PdfName.FontDescriptor);
+                assertNotNull(descriptor.getAsStream(PdfName.FontFile2), name + ": police non embarquée");
+                identityH = true;
+            }
+            assertTrue(identityH, name + ": pas de police Type0 Identity-H");
+
+            // Le contenu est celui de ce document (pas de mélange entre rendus simultanés)
+            String text = PdfTextExtractor.getTextFromPage(document.getFirstPage());
+            assertTrue(text.contains(name), name + ": titre absent du PDF");
+        }
+    }
+
+    /** Une semaine de cours (une heure par matinée et par après-midi), textes arabes compris. */
+    private static List<SlotDto> timetable(String name) {
+        SlotCodec codec = SlotCodec.DEFAULT;
+        List<SlotDto> slots = new ArrayList<>();
+        for (int day = 0; day < SlotCodec.DAYS.size(); day++) {
+            for (boolean morning : new boolean[]{true, false}) {
+                int ordinal = codec.encode(day, morning, 1 + day % codec.hoursPerHalfDay());
+                slots.add(new SlotDto(SlotCodec.DAYS.get(day), morning ? "M" : "S",
+                        codec.hourId(ordinal, ordinal), codec.timeslot(ordinal),
+                        "الرياضيات", "أستاذ " + name, name, "قاعة " + (day + 1),
+                        ordinal, ordinal, codec.sortKey(ordinal, day, morning)));
+            }
+        }
+        return slots;
+    }
+}